@@ -0,0 +1,96 @@
+package jraffic.bench;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import jraffic.GapKernel;
+import jraffic.Vehicle;
+import jraffic.VehicleStore;
+
+// decide is one kernel call over a single lane of gathered progress, half the
+// time against a red light; tick is the two-phase VehicleStore tick deciding
+// through the kernel, to set against TickBenchmark.parallelTick. The fork adds
+// the incubator module, but "vector" is only the real kernel in a -Pvector
+// build; otherwise it measures the scalar fallback.
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "--add-modules=jdk.incubator.vector")
+public class GapKernelBenchmark {
+
+    @Param({ "1000", "10000", "100000" })
+    public int vehicles;
+
+    @Param({ "scalar", "vector" })
+    public String kernel;
+
+    private GapKernel gaps;
+    private int[] progress;
+    private int[] ahead;
+    private boolean[] moving;
+    private boolean[] stepping;
+    private int stop;
+    private boolean red;
+
+    private List<Vehicle> template;
+    private VehicleStore store;
+
+    @Setup(Level.Trial)
+    public void createScene() {
+        gaps = GapKernel.create(kernel);
+        Random random = new Random(Scenario.SEED);
+        progress = new int[vehicles];
+        ahead = new int[vehicles];
+        moving = new boolean[vehicles];
+        stepping = new boolean[vehicles];
+        int p = 0;
+        for (int k = 0; k < vehicles; k++) {
+            p += random.nextInt(200);
+            progress[k] = p;
+        }
+        for (int k = 0; k < vehicles; k++) {
+            ahead[k] = k + 1 < vehicles ? progress[k + 1] : Integer.MAX_VALUE;
+        }
+        stop = progress[vehicles / 2];
+
+        template = Scenario.vehicles(vehicles, Scenario.SEED);
+        store = Scenario.store(vehicles, Scenario.SEED);
+        store.pool = ForkJoinPool.commonPool();
+        store.kernel = gaps;
+    }
+
+    @Setup(Level.Iteration)
+    public void resetScene() {
+        Scenario.reset(store, template);
+    }
+
+    @Benchmark
+    public boolean[] decide() {
+        red = !red;
+        gaps.decide(progress, ahead, 0, vehicles, stop, red, 95, moving, stepping);
+        return stepping;
+    }
+
+    @Benchmark
+    public VehicleStore tick() {
+        store.update();
+        return store;
+    }
+}
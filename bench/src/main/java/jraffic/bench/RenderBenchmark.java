@@ -0,0 +1,141 @@
+package jraffic.bench;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import jraffic.Grid;
+import jraffic.MovementDirection;
+import jraffic.Renderer;
+import jraffic.SeededRandom;
+import jraffic.Simulation;
+import jraffic.Snapshot;
+import jraffic.SpriteCache;
+import jraffic.Vehicle;
+import jraffic.Viewport;
+
+// One full frame drawn into an off-screen image, of a single intersection and of
+// a city holding the same vehicles. scaledSprites is the previous
+// Main.draw: the road filled shape by shape, a String key and HashMap lookup per
+// vehicle and drawImage scaling the full-size sprite every time.
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class RenderBenchmark {
+
+    @Param({ "28", "1000", "10000", "100000" })
+    public int vehicles;
+
+    private static final int CITY = 10;
+
+    private final Snapshot frame = new Snapshot();
+    private final Snapshot city = new Snapshot();
+    private final Map<String, BufferedImage> images = new HashMap<>();
+    private BufferedImage canvas;
+    private Graphics2D g;
+    private Renderer renderer;
+    private Renderer cityRenderer;
+    private final Viewport view = new Viewport(Renderer.WIDTH, Renderer.HEIGHT);
+    private final Viewport cityView = new Viewport(Renderer.WIDTH, Renderer.HEIGHT);
+    private final Viewport cityCell = new Viewport(Renderer.WIDTH, Renderer.HEIGHT);
+
+    @Setup
+    public void setup() {
+        Simulation sim = Scenario.simulation(vehicles, Scenario.SEED);
+        frame.capture(sim);
+        renderer = new Renderer(SpriteCache.load());
+        renderer.prepare(frame, frame);
+
+        // The same number of vehicles spread over a city of CITY x CITY intersections.
+        Grid grid = new Grid(CITY, CITY, ForkJoinPool.commonPool(), new SeededRandom(Scenario.SEED));
+        int perCell = Math.max(1, vehicles / (CITY * CITY));
+        for (int i = 0; i < grid.cells.length; i++) {
+            Simulation cell = grid.cells[i];
+            cell.maxVehicles = Integer.MAX_VALUE;
+            Scenario.reset(cell, Scenario.vehicles(perCell, Scenario.SEED + i), Scenario.vehicles(perCell,
+                    Scenario.SEED + i));
+        }
+        city.capture(grid);
+        cityRenderer = new Renderer(SpriteCache.load());
+        cityRenderer.prepare(city, city);
+        cityView.fit(CITY * Snapshot.CELL_WIDTH, CITY * Snapshot.CELL_HEIGHT);
+        cityCell.left = CITY / 2 * Snapshot.CELL_WIDTH;
+        cityCell.top = CITY / 2 * Snapshot.CELL_HEIGHT;
+        BufferedImage[][] cells = SpriteCache.cells();
+        for (int c = 0; c < Vehicle.COLOR_NAMES.length; c++) {
+            for (MovementDirection dir : MovementDirection.values()) {
+                images.put(Vehicle.COLOR_NAMES[c] + "_" + dir.name(), cells[c][dir.ordinal()]);
+            }
+        }
+        canvas = new BufferedImage(Renderer.WIDTH, Renderer.HEIGHT, BufferedImage.TYPE_INT_RGB);
+        g = canvas.createGraphics();
+    }
+
+    @TearDown
+    public void tearDown() {
+        g.dispose();
+    }
+
+    @Benchmark
+    public BufferedImage cachedSprites() {
+        renderer.draw(g, view, 1, "");
+        return canvas;
+    }
+
+    // One intersection of the city at full detail; the index skips the other 99.
+    @Benchmark
+    public BufferedImage cityCulled() {
+        cityRenderer.draw(g, cityCell, 1, "");
+        return canvas;
+    }
+
+    // The whole city zoomed out to fit, drawn as a density heatmap.
+    @Benchmark
+    public BufferedImage cityZoomedOut() {
+        cityRenderer.draw(g, cityView, 1, "");
+        return canvas;
+    }
+
+    @Benchmark
+    public BufferedImage scaledSprites() {
+        g.setColor(new Color(5, 8, 15));
+        g.fillRect(0, 0, Renderer.WIDTH, Renderer.HEIGHT);
+        g.setColor(new Color(18, 20, 25));
+        g.fillRect(0, 300, 800, 100);
+        g.fillRect(350, 0, 100, 700);
+        g.setColor(new Color(12, 15, 20));
+        g.fillRect(350, 300, 100, 100);
+        g.setColor(new Color(0, 128, 255, 51));
+        g.fillOval(387, 337, 25, 25);
+        g.setColor(new Color(0, 128, 255, 204));
+        g.drawOval(392, 342, 15, 15);
+        for (int i = 0; i < frame.size; i++) {
+            MovementDirection dir = frame.dir(i);
+            BufferedImage img = images.get(Vehicle.COLOR_NAMES[frame.color(i)] + "_" + dir.name());
+            int width = SpriteCache.width(dir);
+            int height = SpriteCache.height(dir);
+            g.drawImage(img, frame.x[i] - width / 2, frame.y[i] - height / 2, width, height, null);
+        }
+        return canvas;
+    }
+}
@@ -0,0 +1,99 @@
+package jraffic.bench;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import jraffic.KinematicStore;
+import jraffic.MovementDirection;
+import jraffic.Simulation;
+import jraffic.Vehicle;
+import jraffic.VehicleStore;
+
+// Seeded vehicle layouts for the benchmarks. Vehicles are dropped at random even
+// coordinates along the four lanes, ignoring spawn spacing, so any count fits.
+final class Scenario {
+
+    static final long SEED = 42L;
+
+    private static final MovementDirection[] DIRS = MovementDirection.values();
+
+    private Scenario() {
+    }
+
+    static List<Vehicle> vehicles(int count, long seed) {
+        Random random = new Random(seed);
+        List<Vehicle> vehicles = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            vehicles.add(next(random));
+        }
+        return vehicles;
+    }
+
+    static Simulation simulation(int count, long seed) {
+        Simulation sim = new Simulation();
+        sim.maxVehicles = Integer.MAX_VALUE;
+        reset(sim, vehicles(count, seed), vehicles(count, seed));
+        return sim;
+    }
+
+    static VehicleStore store(int count, long seed) {
+        VehicleStore store = new VehicleStore();
+        store.maxVehicles = Integer.MAX_VALUE;
+        reset(store, vehicles(count, seed));
+        return store;
+    }
+
+    static KinematicStore kinematic(int count, long seed) {
+        KinematicStore store = new KinematicStore();
+        store.maxVehicles = Integer.MAX_VALUE;
+        reset(store, vehicles(count, seed));
+        return store;
+    }
+
+    // Puts the template scene back into the engine, reusing its storage and the
+    // given vehicle objects so that the reset itself does not allocate.
+    static void reset(Simulation sim, List<Vehicle> template, List<Vehicle> vehicles) {
+        sim.clear();
+        for (int i = 0; i < template.size(); i++) {
+            Vehicle t = template.get(i);
+            Vehicle v = vehicles.get(i);
+            v.x = t.x;
+            v.y = t.y;
+            v.dir = t.dir;
+            v.startDir = t.startDir;
+            v.turned = false;
+            v.moving = false;
+            sim.add(v);
+        }
+    }
+
+    static void reset(VehicleStore store, List<Vehicle> template) {
+        store.clear();
+        for (Vehicle t : template) {
+            store.add(t.x, t.y, t.dir, t.colorId);
+        }
+    }
+
+    static void reset(KinematicStore store, List<Vehicle> template) {
+        store.clear();
+        for (Vehicle t : template) {
+            store.add(t.x, t.y, t.dir, t.colorId);
+        }
+    }
+
+    private static Vehicle next(Random random) {
+        MovementDirection dir = DIRS[random.nextInt(DIRS.length)];
+        String colorName = Vehicle.COLOR_NAMES[random.nextInt(Vehicle.COLOR_NAMES.length)];
+        switch (dir) {
+            case North:
+                return Vehicle.spawn(360, -30 + 2 * random.nextInt(385), dir, colorName);
+            case South:
+                return Vehicle.spawn(410, 700 - 2 * random.nextInt(365), dir, colorName);
+            case West:
+                return Vehicle.spawn(800 - 2 * random.nextInt(415), 310, dir, colorName);
+            default:
+                return Vehicle.spawn(-30 + 2 * random.nextInt(435), 360, dir, colorName);
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package jraffic.bench;
+
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import jraffic.KinematicStore;
+import jraffic.Simulation;
+import jraffic.Vehicle;
+import jraffic.VehicleStore;
+
+// A full tick: lights, checkLights, blocked, step, turnCheck and despawn. The
+// scene is rebuilt every iteration so vehicles leaving the map do not thin it out.
+// kinematicTick is the same scene under the continuous car-following model, to
+// be held within 2x of storeTick. parallelTick is the two-phase VehicleStore
+// tick on the common pool.
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TickBenchmark {
+
+    @Param({ "28", "1000", "10000", "100000" })
+    public int vehicles;
+
+    private List<Vehicle> template;
+    private List<Vehicle> simVehicles;
+    private Simulation sim;
+    private VehicleStore store;
+    private VehicleStore parallel;
+    private KinematicStore kinematic;
+
+    @Setup(Level.Trial)
+    public void createScene() {
+        template = Scenario.vehicles(vehicles, Scenario.SEED);
+        simVehicles = Scenario.vehicles(vehicles, Scenario.SEED);
+        sim = Scenario.simulation(vehicles, Scenario.SEED);
+        store = Scenario.store(vehicles, Scenario.SEED);
+        parallel = Scenario.store(vehicles, Scenario.SEED);
+        parallel.pool = ForkJoinPool.commonPool();
+        kinematic = Scenario.kinematic(vehicles, Scenario.SEED);
+    }
+
+    @Setup(Level.Iteration)
+    public void resetScene() {
+        Scenario.reset(sim, template, simVehicles);
+        Scenario.reset(store, template);
+        Scenario.reset(parallel, template);
+        Scenario.reset(kinematic, template);
+    }
+
+    @Benchmark
+    public Simulation simulationTick() {
+        sim.update();
+        return sim;
+    }
+
+    @Benchmark
+    public VehicleStore storeTick() {
+        store.update();
+        return store;
+    }
+
+    @Benchmark
+    public VehicleStore parallelTick() {
+        parallel.update();
+        return parallel;
+    }
+
+    @Benchmark
+    public KinematicStore kinematicTick() {
+        kinematic.update();
+        return kinematic;
+    }
+}
@@ -0,0 +1,86 @@
+package jraffic.bench;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import jraffic.MovementDirection;
+import jraffic.Simulation;
+import jraffic.TrafficSystem;
+import jraffic.Vehicle;
+
+// scan is the controller as it first was, four stream passes counting the
+// queues and one more looking for a vehicle in the intersection; list counts
+// the same in one pass through Counters; counters reads what the tick keeps.
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TrafficSystemBenchmark {
+
+    @Param({ "28", "1000", "10000", "100000" })
+    public int vehicles;
+
+    private List<Vehicle> vehicleList;
+    private Simulation sim;
+    private TrafficSystem.TrafficHub hub;
+
+    @Setup
+    public void setup() {
+        vehicleList = Scenario.vehicles(vehicles, Scenario.SEED);
+        sim = Scenario.simulation(vehicles, Scenario.SEED);
+        hub = new TrafficSystem.TrafficHub();
+    }
+
+    @Benchmark
+    public TrafficSystem.TrafficHub updateLightsScan() {
+        int qNorth = (int) vehicleList.stream()
+            .filter(v -> v.startDir == MovementDirection.North && !v.turned && v.y <= 240 && v.y >= -30)
+            .count();
+        int qSouth = (int) vehicleList.stream()
+            .filter(v -> v.startDir == MovementDirection.South && !v.turned && v.y >= 420 && v.y <= 700)
+            .count();
+        int qFromWest = (int) vehicleList.stream()
+            .filter(v -> v.startDir == MovementDirection.East && !v.turned && v.x >= -30 && v.x <= 300)
+            .count();
+        int qFromEast = (int) vehicleList.stream()
+            .filter(v -> v.startDir == MovementDirection.West && !v.turned && v.x >= 470 && v.x <= 800)
+            .count();
+        TrafficSystem.updateLights(hub, qNorth, qSouth, qFromWest, qFromEast, intersectionIsClear(vehicleList));
+        return hub;
+    }
+
+    @Benchmark
+    public TrafficSystem.TrafficHub updateLightsList() {
+        TrafficSystem.updateLights(hub, vehicleList);
+        return hub;
+    }
+
+    @Benchmark
+    public TrafficSystem.TrafficHub updateLightsCounters() {
+        TrafficSystem.updateLights(hub, sim.counters);
+        return hub;
+    }
+
+    private static boolean intersectionIsClear(List<Vehicle> vehicles) {
+        for (Vehicle vehicle : vehicles) {
+            if (vehicle.x >= 301 && vehicle.x <= 469 && vehicle.y >= 241 && vehicle.y <= 419) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,71 @@
+package jraffic.bench;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import jraffic.Simulation;
+import jraffic.Vehicle;
+
+// One blocked query per operation, cycling through the vehicles; turnCheck is
+// one pass over every vehicle.
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class VehicleBenchmark {
+
+    @Param({ "28", "1000", "10000", "100000" })
+    public int vehicles;
+
+    private List<Vehicle> vehicleList;
+    private Simulation sim;
+    private int next;
+
+    @Setup
+    public void setup() {
+        vehicleList = Scenario.vehicles(vehicles, Scenario.SEED);
+        sim = Scenario.simulation(vehicles, Scenario.SEED);
+    }
+
+    private int nextIndex() {
+        int i = next;
+        next = i + 1 == vehicles ? 0 : i + 1;
+        return i;
+    }
+
+    @Benchmark
+    public boolean blockedScan() {
+        return vehicleList.get(nextIndex()).blocked(vehicleList);
+    }
+
+    @Benchmark
+    public boolean blockedIndexed() {
+        return sim.lanes.blocked(sim.vehicleList.get(nextIndex()));
+    }
+
+    @Benchmark
+    public int turnCheck() {
+        int turned = 0;
+        for (Vehicle v : vehicleList) {
+            v.turnCheck();
+            if (v.turned) {
+                turned++;
+            }
+        }
+        return turned;
+    }
+}
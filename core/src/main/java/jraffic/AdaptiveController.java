@@ -0,0 +1,40 @@
+package jraffic;
+
+// The original policy: green stretches with the queue it serves, then goes to
+// the approach under the most pressure relative to its capacity.
+public class AdaptiveController implements SignalController {
+
+    private final TrafficConfig config;
+
+    public AdaptiveController() {
+        this(new TrafficConfig());
+    }
+
+    public AdaptiveController(TrafficConfig config) {
+        this.config = config;
+    }
+
+    @Override
+    public void update(TrafficSystem.TrafficHub hub, TrafficSystem.Counters counters) {
+        TrafficSystem.updateLights(config, hub, counters);
+    }
+
+    // Until the green time runs out or the all-red window ends.
+    @Override
+    public long quietTicks(TrafficSystem.TrafficHub hub, TrafficSystem.Counters counters) {
+        long green = TrafficSystem.greenTime(config, hub.phase, counters) - hub.timer - 1;
+        return Math.max(0, Math.min(green, TrafficSystem.settleQuietTicks(config, hub)));
+    }
+
+    @Override
+    public void skip(TrafficSystem.TrafficHub hub, TrafficSystem.Counters counters, long ticks) {
+        hub.phaseDuration = TrafficSystem.greenTime(config, hub.phase, counters);
+        hub.timer += (int) ticks;
+        TrafficSystem.skipSettle(hub, ticks);
+    }
+
+    @Override
+    public String name() {
+        return "adaptive";
+    }
+}
@@ -0,0 +1,98 @@
+package jraffic;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+// Bounded lock-free queue of arrivals from any number of producer threads to a
+// single consumer. Each arrival is one long, tick << 18 | entry << 2 | color,
+// with color ANY_COLOR when the source did not say.
+//
+// A ring of slots, each with a sequence number (Vyukov's bounded queue):
+// producers claim a slot by CAS on the tail, write it and publish it by setting
+// its sequence; the consumer reads in order and hands the slot back a lap
+// later. Nothing allocates and neither side takes a lock. A full queue refuses
+// the arrival, so producers decide how to wait.
+public class ArrivalQueue {
+
+    public static final int ANY_COLOR = 3;
+    public static final int MAX_ENTRIES = 1 << 16;
+
+    private final long[] values;
+    private final AtomicLongArray sequences;
+    private final int mask;
+    private final AtomicLong tail = new AtomicLong();
+    // Consumer only; published for size().
+    private final AtomicLong head = new AtomicLong();
+
+    // capacity is rounded up to a power of two.
+    public ArrivalQueue(int capacity) {
+        int size = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+        this.values = new long[size];
+        this.sequences = new AtomicLongArray(size);
+        this.mask = size - 1;
+        for (int i = 0; i < size; i++) {
+            sequences.set(i, i);
+        }
+    }
+
+    public static long encode(long tick, int entry, int color) {
+        return tick << 18 | (long) entry << 2 | color;
+    }
+
+    public static long tick(long arrival) {
+        return arrival >>> 18;
+    }
+
+    public static int entry(long arrival) {
+        return (int) (arrival >>> 2) & (MAX_ENTRIES - 1);
+    }
+
+    public static int color(long arrival) {
+        return (int) arrival & 3;
+    }
+
+    public int capacity() {
+        return values.length;
+    }
+
+    // Any thread. False when the queue is full.
+    public boolean offer(long arrival) {
+        while (true) {
+            long t = tail.get();
+            int i = (int) t & mask;
+            long free = sequences.get(i) - t;
+            if (free == 0) {
+                if (tail.compareAndSet(t, t + 1)) {
+                    values[i] = arrival;
+                    sequences.lazySet(i, t + 1);
+                    return true;
+                }
+            } else if (free < 0) {
+                return false;
+            }
+        }
+    }
+
+    // Consumer only: whether peek() has an arrival.
+    public boolean ready() {
+        long h = head.get();
+        return sequences.get((int) h & mask) == h + 1;
+    }
+
+    // Consumer only: the oldest arrival, after ready() said there is one.
+    public long peek() {
+        return values[(int) head.get() & mask];
+    }
+
+    // Consumer only: drops the arrival peek() returned.
+    public void remove() {
+        long h = head.get();
+        sequences.lazySet((int) h & mask, h + values.length);
+        head.lazySet(h + 1);
+    }
+
+    // Approximate, for reporting.
+    public int size() {
+        return (int) Math.max(0, tail.get() - head.get());
+    }
+}
@@ -0,0 +1,117 @@
+package jraffic;
+
+// Arrivals waiting at each entry point until it is clear, one color byte each
+// in a ring per entry. A ring starts small, doubles as it fills and never holds
+// more than the limit, so a saturated entry costs a fixed amount of memory and
+// add() refuses what does not fit; the caller decides whether that arrival is
+// dropped or held back. peak is the largest total across entries, the same sum
+// total() reports.
+public class Backlog {
+
+    public static final int DEFAULT_LIMIT = 1 << 16;
+
+    private static final int INITIAL = 16;
+
+    private final byte[][] rings;
+    private final int[] heads;
+    private final int[] sizes;
+    private final int limit;
+    private int total;
+    private int peak;
+
+    public Backlog(int entries, int limit) {
+        if (limit < 1) {
+            throw new IllegalArgumentException("Backlog limit must be positive: " + limit);
+        }
+        this.rings = new byte[entries][];
+        this.heads = new int[entries];
+        this.sizes = new int[entries];
+        this.limit = limit;
+        for (int e = 0; e < entries; e++) {
+            rings[e] = new byte[Math.min(INITIAL, limit)];
+        }
+    }
+
+    public int entries() {
+        return rings.length;
+    }
+
+    public int limit() {
+        return limit;
+    }
+
+    // False, and nothing queued, when the entry already holds limit arrivals.
+    public boolean add(int entry, int color) {
+        int size = sizes[entry];
+        if (size == limit) {
+            return false;
+        }
+        byte[] ring = rings[entry];
+        if (size == ring.length) {
+            ring = grow(entry);
+        }
+        ring[(heads[entry] + size) % ring.length] = (byte) color;
+        sizes[entry] = size + 1;
+        peak = Math.max(peak, ++total);
+        return true;
+    }
+
+    public boolean isEmpty(int entry) {
+        return sizes[entry] == 0;
+    }
+
+    public boolean isFull(int entry) {
+        return sizes[entry] == limit;
+    }
+
+    // Color of the oldest arrival at a non-empty entry.
+    public int peek(int entry) {
+        return rings[entry][heads[entry]];
+    }
+
+    public void remove(int entry) {
+        heads[entry] = (heads[entry] + 1) % rings[entry].length;
+        sizes[entry]--;
+        total--;
+    }
+
+    public int size(int entry) {
+        return sizes[entry];
+    }
+
+    // Color of the i-th oldest arrival at an entry.
+    public int get(int entry, int i) {
+        return rings[entry][(heads[entry] + i) % rings[entry].length];
+    }
+
+    public void clear(int entry) {
+        total -= sizes[entry];
+        heads[entry] = 0;
+        sizes[entry] = 0;
+    }
+
+    public int total() {
+        return total;
+    }
+
+    public int peak() {
+        return peak;
+    }
+
+    // For restoring a checkpoint; never below what is queued now.
+    public void setPeak(int peak) {
+        this.peak = Math.max(peak, total);
+    }
+
+    private byte[] grow(int entry) {
+        byte[] ring = rings[entry];
+        byte[] grown = new byte[(int) Math.min(limit, 2L * ring.length)];
+        int head = heads[entry];
+        int first = ring.length - head;
+        System.arraycopy(ring, head, grown, 0, first);
+        System.arraycopy(ring, 0, grown, first, head);
+        rings[entry] = grown;
+        heads[entry] = 0;
+        return grown;
+    }
+}
@@ -0,0 +1,224 @@
+package jraffic;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+// The complete state of a single-intersection engine, and of the demand feeding
+// it, as one binary image: tick and totals, the lights, the random stream and
+// every vehicle, then the demand's arrival streams and backlogs. Restoring it
+// into a fresh engine of the same kind continues the run exactly where it was
+// taken, draw for draw; a restored Simulation rebuilds its lane index and
+// counters by adding the vehicles back in list order.
+//
+// The image is kept in memory, so one checkpoint read from disk can be restored
+// into any number of engines, one per what-if run, without re-simulating the
+// warm-up. Settings are not part of it: the controller, TrafficConfig, rates and
+// profile are whatever the restoring engine and demand were built with, which is
+// what a what-if changes. Metrics start empty.
+//
+// File: MAGIC, VERSION, engine kind, layout name, then
+//   long    tick, spawned, despawned
+//   byte    north | south << 1 | west << 2 | east << 3 lights; phase; pendingPhase or -1
+//   int     timer, phaseDuration, pendingTimer
+//   long    random state, gamma
+//   int     vehicle count, then per vehicle in list order:
+//     int   x, y
+//     byte  dir, startDir, color, turned | moving << 1
+//     long  id, int waitTicks, long entryTick, int stoppedTicks (objects only)
+//   byte    1 when demand follows (TrafficDemand.save), else 0
+public class Checkpoint {
+
+    public static final int MAGIC = 0x4A52434B; // "JRCK"
+    public static final int VERSION = 1;
+
+    private static final MovementDirection[] DIRS = MovementDirection.values();
+    private static final int OBJECTS = 0;
+    private static final int SOA = 1;
+    private static final String[] KINDS = { "objects", "soa" };
+
+    private final byte[] image;
+    private final long tick;
+
+    private Checkpoint(byte[] image) throws IOException {
+        this.image = image;
+        ByteBuffer in = ByteBuffer.wrap(image);
+        if (in.remaining() < 6 || in.getInt() != MAGIC) {
+            throw new IOException("Not a checkpoint file");
+        }
+        int version = in.get();
+        if (version != VERSION) {
+            throw new IOException("Unsupported checkpoint version " + version);
+        }
+        in.get();
+        int layout = in.getShort();
+        in.position(in.position() + layout);
+        this.tick = in.getLong();
+    }
+
+    // demand may be null.
+    public static Checkpoint capture(TrafficEngine engine, TrafficDemand demand) {
+        int kind = kind(engine);
+        byte[] layout = layout(engine).name.getBytes(StandardCharsets.UTF_8);
+        int vehicles = engine.vehicleCount();
+        int size = 8 + layout.length + 24 + 15 + 16 + 4 + vehicles * (kind == OBJECTS ? 36 : 24) + 1
+                + (demand != null ? demand.stateBytes() : 0);
+        ByteBuffer out = ByteBuffer.allocate(size);
+        out.putInt(MAGIC).put((byte) VERSION).put((byte) kind);
+        out.putShort((short) layout.length).put(layout);
+        out.putLong(engine.tick()).putLong(engine.spawned()).putLong(engine.despawned());
+        TrafficSystem.TrafficHub hub = engine.hub();
+        out.put((byte) ((hub.northOn ? 1 : 0) | (hub.southOn ? 2 : 0) | (hub.westOn ? 4 : 0) | (hub.eastOn ? 8 : 0)));
+        out.put((byte) hub.phase.ordinal());
+        out.put((byte) (hub.pendingPhase != null ? hub.pendingPhase.ordinal() : -1));
+        out.putInt(hub.timer).putInt(hub.phaseDuration).putInt(hub.pendingTimer);
+        out.putInt(vehicles);
+        if (kind == OBJECTS) {
+            Simulation sim = (Simulation) engine;
+            out.putLong(sim.random.state()).putLong(sim.random.gamma());
+            for (Vehicle v : sim.vehicleList) {
+                out.putInt(v.x).putInt(v.y);
+                out.put((byte) v.dir.ordinal()).put((byte) v.startDir.ordinal()).put((byte) v.colorId);
+                out.put((byte) ((v.turned ? 1 : 0) | (v.moving ? 2 : 0)));
+                out.putLong(v.id).putInt(v.waitTicks);
+                out.putLong(v.entryTick).putInt(v.stoppedTicks);
+            }
+        } else {
+            VehicleStore store = (VehicleStore) engine;
+            out.putLong(store.random.state()).putLong(store.random.gamma());
+            for (int i = 0; i < store.size; i++) {
+                out.putInt(store.x[i]).putInt(store.y[i]);
+                out.put(store.dir[i]).put(store.startDir[i]).put(store.color[i]);
+                out.put((byte) ((store.turned[i] ? 1 : 0) | (store.moving[i] ? 2 : 0)));
+            }
+        }
+        out.put((byte) (demand != null ? 1 : 0));
+        if (demand != null) {
+            demand.save(out);
+        }
+        try {
+            return new Checkpoint(out.array());
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    public static Checkpoint read(Path path) throws IOException {
+        return new Checkpoint(Files.readAllBytes(path));
+    }
+
+    public void write(Path path) throws IOException {
+        Files.write(path, image);
+    }
+
+    public long tick() {
+        return tick;
+    }
+
+    public int bytes() {
+        return image.length;
+    }
+
+    // Replaces the engine's state, and the demand's when the checkpoint has one
+    // and demand is not null. The engine must be of the kind captured and on the
+    // same layout; anything it held before is cleared.
+    public void restore(TrafficEngine engine, TrafficDemand demand) {
+        ByteBuffer in = ByteBuffer.wrap(image);
+        in.position(5);
+        int kind = in.get();
+        if (kind != kind(engine)) {
+            throw new IllegalArgumentException("Checkpoint is of the " + KINDS[kind] + " engine, not "
+                    + KINDS[kind(engine)]);
+        }
+        byte[] layout = new byte[in.getShort()];
+        in.get(layout);
+        String name = new String(layout, StandardCharsets.UTF_8);
+        if (!name.equals(layout(engine).name)) {
+            throw new IllegalArgumentException("Checkpoint was taken on layout " + name + ", not "
+                    + layout(engine).name);
+        }
+        long tick = in.getLong();
+        long spawned = in.getLong();
+        long despawned = in.getLong();
+
+        TrafficSystem.TrafficHub hub = engine.hub();
+        if (kind == OBJECTS) {
+            ((Simulation) engine).clear();
+        } else {
+            ((VehicleStore) engine).clear();
+        }
+        int lights = in.get();
+        hub.northOn = (lights & 1) != 0;
+        hub.southOn = (lights & 2) != 0;
+        hub.westOn = (lights & 4) != 0;
+        hub.eastOn = (lights & 8) != 0;
+        hub.phase = DIRS[in.get()];
+        int pending = in.get();
+        hub.pendingPhase = pending >= 0 ? DIRS[pending] : null;
+        hub.timer = in.getInt();
+        hub.phaseDuration = in.getInt();
+        hub.pendingTimer = in.getInt();
+
+        int vehicles = in.getInt();
+        if (kind == OBJECTS) {
+            Simulation sim = (Simulation) engine;
+            sim.random.set(in.getLong(), in.getLong());
+            for (int i = 0; i < vehicles; i++) {
+                int x = in.getInt();
+                int y = in.getInt();
+                MovementDirection dir = DIRS[in.get()];
+                MovementDirection startDir = DIRS[in.get()];
+                Vehicle v = Vehicle.spawn(x, y, dir, Vehicle.COLOR_NAMES[in.get()]);
+                int flags = in.get();
+                v.startDir = startDir;
+                v.origin = startDir;
+                v.turned = (flags & 1) != 0;
+                v.moving = (flags & 2) != 0;
+                sim.add(v);
+                v.id = in.getLong();
+                v.waitTicks = in.getInt();
+                v.entryTick = in.getLong();
+                v.stoppedTicks = in.getInt();
+            }
+            sim.tick = tick;
+            sim.spawned = spawned;
+            sim.despawned = despawned;
+        } else {
+            VehicleStore store = (VehicleStore) engine;
+            store.random.set(in.getLong(), in.getLong());
+            for (int i = 0; i < vehicles; i++) {
+                int x = in.getInt();
+                int y = in.getInt();
+                MovementDirection dir = DIRS[in.get()];
+                MovementDirection startDir = DIRS[in.get()];
+                int color = in.get();
+                int flags = in.get();
+                store.add(x, y, dir, startDir, color, (flags & 1) != 0, (flags & 2) != 0);
+            }
+            store.tick = tick;
+            store.spawned = spawned;
+            store.despawned = despawned;
+        }
+
+        if (in.get() != 0 && demand != null) {
+            demand.restore(in);
+        }
+    }
+
+    private static int kind(TrafficEngine engine) {
+        if (engine.getClass() == Simulation.class) {
+            return OBJECTS;
+        }
+        if (engine.getClass() == VehicleStore.class) {
+            return SOA;
+        }
+        throw new IllegalArgumentException("Checkpoints cover the objects and soa engines, not "
+                + engine.getClass().getSimpleName());
+    }
+
+    private static Layout layout(TrafficEngine engine) {
+        return engine instanceof Simulation ? ((Simulation) engine).layout : ((VehicleStore) engine).layout;
+    }
+}
@@ -0,0 +1,167 @@
+package jraffic;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+// Runs every signal controller against the same seeded demand, several seeds
+// each, all in parallel, and prints throughput and stop-line delay per policy.
+// Run r of every controller uses seed + r for both engine and demand, so the
+// arrival streams are identical across controllers.
+public class ControllerComparison {
+
+    private static final MovementDirection[] DIRS = MovementDirection.values();
+
+    private static class Run implements Callable<Run> {
+
+        final String controller;
+        final long seed;
+        final long ticks;
+        final String rates;
+        final String routes;
+        final String profile;
+        final long profilePeriod;
+
+        final Metrics metrics = new Metrics();
+        long despawned;
+        long generated;
+        int backlog;
+
+        Run(String controller, long seed, long ticks, String rates, String routes, String profile,
+                long profilePeriod) {
+            this.controller = controller;
+            this.seed = seed;
+            this.ticks = ticks;
+            this.rates = rates;
+            this.routes = routes;
+            this.profile = profile;
+            this.profilePeriod = profilePeriod;
+        }
+
+        @Override
+        public Run call() {
+            Simulation sim = new Simulation(new SeededRandom(seed));
+            sim.controller = SignalController.create(controller);
+            sim.metrics = metrics;
+            TrafficDemand demand = new TrafficDemand(sim, new SeededRandom(seed).split());
+            demand.parseRates(rates);
+            if (routes != null) {
+                demand.parseRoutes(routes);
+            }
+            if (profile != null) {
+                demand.parseProfile(profile, profilePeriod);
+            }
+            for (long i = 0; i < ticks; i++) {
+                demand.inject(i);
+                sim.update();
+            }
+            despawned = sim.despawned;
+            generated = demand.generated;
+            backlog = demand.backlog();
+            return this;
+        }
+    }
+
+    private static void usage() {
+        System.err.println("Usage: ControllerComparison [--ticks N] [--runs N] [--seed N] [--threads N]"
+                + " [--controllers NAME,...] [--demand RATES] [--routes B,Y,B] [--profile T:F,...]"
+                + " [--profile-period N]");
+        System.err.println("Controllers: " + String.join(", ", SignalController.NAMES));
+        System.exit(2);
+    }
+
+    public static void main(String[] args) throws InterruptedException, ExecutionException {
+
+        long ticks = 216_000;
+        int runs = 4;
+        long seed = System.nanoTime();
+        int threads = Runtime.getRuntime().availableProcessors();
+        String[] controllers = SignalController.NAMES;
+        String rates = "0.01";
+        String routes = null;
+        String profile = null;
+        long profilePeriod = 0;
+
+        for (int i = 0; i < args.length; i++) {
+            if (i + 1 >= args.length) {
+                usage();
+            }
+            switch (args[i]) {
+                case "--ticks":
+                    ticks = Long.parseLong(args[++i]);
+                    break;
+                case "--runs":
+                    runs = Integer.parseInt(args[++i]);
+                    break;
+                case "--seed":
+                    seed = Long.parseLong(args[++i]);
+                    break;
+                case "--threads":
+                    threads = Integer.parseInt(args[++i]);
+                    break;
+                case "--controllers":
+                    controllers = args[++i].split(",");
+                    break;
+                case "--demand":
+                    rates = args[++i];
+                    break;
+                case "--routes":
+                    routes = args[++i];
+                    break;
+                case "--profile":
+                    profile = args[++i];
+                    break;
+                case "--profile-period":
+                    profilePeriod = Long.parseLong(args[++i]);
+                    break;
+                default:
+                    usage();
+            }
+        }
+        for (String name : controllers) {
+            SignalController.create(name);
+        }
+
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        List<Run> tasks = new ArrayList<>();
+        for (String name : controllers) {
+            for (int r = 0; r < runs; r++) {
+                tasks.add(new Run(name, seed + r, ticks, rates, routes, profile, profilePeriod));
+            }
+        }
+        long start = System.nanoTime();
+        List<Future<Run>> results = pool.invokeAll(tasks);
+        for (Future<Run> result : results) {
+            result.get();
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        pool.shutdown();
+
+        System.out.printf("seed=%d runs=%d ticks=%d demand=%s elapsed=%.1fs%n", seed, runs, ticks, rates, seconds);
+        System.out.printf("%-14s %14s %12s %12s %12s %10s %10s%n", "controller", "veh/1000ticks", "generated",
+                "wait-mean", "wait-p99", "wait-max", "backlog");
+        for (int c = 0; c < controllers.length; c++) {
+            Metrics total = new Metrics();
+            long despawned = 0;
+            long generated = 0;
+            long backlog = 0;
+            for (int r = 0; r < runs; r++) {
+                Run run = tasks.get(c * runs + r);
+                run.metrics.addTo(total);
+                despawned += run.despawned;
+                generated += run.generated;
+                backlog += run.backlog;
+            }
+            Histogram wait = new Histogram();
+            for (MovementDirection dir : DIRS) {
+                total.stopLineWait[dir.ordinal()].addTo(wait);
+            }
+            System.out.printf("%-14s %14.2f %12d %12.1f %12d %10d %10.1f%n", controllers[c],
+                    1000.0 * despawned / (ticks * runs), generated / runs, wait.mean(), wait.valueAtQuantile(0.99),
+                    wait.max(), (double) backlog / runs);
+        }
+    }
+}
@@ -0,0 +1,307 @@
+package jraffic;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.concurrent.locks.LockSupport;
+
+// Reads a recorded detector log on a background thread and offers its arrivals
+// to an ArrivalQueue, waiting while the queue is full or the next arrival is past
+// the tick allow() last gave. The file is memory-mapped a window at a time and
+// never held in memory, so a feed of any size streams at the rate the
+// simulation takes arrivals.
+//
+// Two formats, told apart by the first four bytes:
+//   CSV: one "tick,approach[,color]" line per arrival. The approach is an
+//        entry number or, where only one entry drives that way, a direction of
+//        travel; the color is Blue, Yellow, Brown or 0-2, and is drawn by the
+//        replay when absent. Blank lines, '#' comments and a header are skipped.
+//   Binary: MAGIC, VERSION, then one big-endian ArrivalQueue.encode long per
+//        arrival.
+// Ticks must not decrease.
+public class DetectorFeed implements Closeable {
+
+    public static final int MAGIC = 0x4A524446; // "JRDF"
+    public static final int VERSION = 1;
+
+    private static final long WINDOW = 1L << 28;
+    private static final int HEADER = 5;
+    private static final MovementDirection[] DIRS = MovementDirection.values();
+
+    private final Path path;
+    private final ArrivalQueue queue;
+    private final int entries;
+    // Entry driving each direction, -1 when none or several do.
+    private final int[] entryOf = new int[DIRS.length];
+    private final byte[][] dirNames = new byte[DIRS.length][];
+    private final byte[][] colorNames = new byte[Vehicle.COLOR_NAMES.length][];
+    private final Thread reader;
+
+    private volatile boolean finished;
+    private volatile IOException failure;
+    private volatile long records;
+    private volatile long limit = -1;
+    // Tick of the arrival being offered.
+    private volatile long next = -1;
+
+    // Reader thread state.
+    private long lastTick;
+    private long line;
+
+    public DetectorFeed(Path path, ArrivalQueue queue, TrafficEngine engine) {
+        this.path = path;
+        this.queue = queue;
+        this.entries = engine.entryCount();
+        Arrays.fill(entryOf, -2);
+        for (int e = 0; e < entries; e++) {
+            int d = engine.entryDirection(e).ordinal();
+            entryOf[d] = entryOf[d] == -2 ? e : -1;
+        }
+        for (int d = 0; d < DIRS.length; d++) {
+            entryOf[d] = Math.max(entryOf[d], -1);
+            dirNames[d] = DIRS[d].name().toLowerCase(Locale.ROOT).getBytes(StandardCharsets.US_ASCII);
+        }
+        for (int c = 0; c < colorNames.length; c++) {
+            colorNames[c] = Vehicle.COLOR_NAMES[c].toLowerCase(Locale.ROOT).getBytes(StandardCharsets.US_ASCII);
+        }
+        this.reader = new Thread(this::read, "detector-feed");
+        reader.setDaemon(true);
+        reader.start();
+    }
+
+    // True once every arrival has been offered, or reading failed.
+    public boolean finished() {
+        return finished;
+    }
+
+    public long records() {
+        return records;
+    }
+
+    public IOException failure() {
+        return failure;
+    }
+
+    // Lets the reader offer arrivals up to and including tick.
+    public void allow(long tick) {
+        limit = tick;
+    }
+
+    // True once everything up to the allowed tick has been offered.
+    public boolean ahead() {
+        return finished || next > limit;
+    }
+
+    // Every arrival up to this tick has been offered.
+    public long reached() {
+        return finished ? Long.MAX_VALUE : next - 1;
+    }
+
+    // Stops reading; arrivals already queued stay there.
+    @Override
+    public void close() {
+        reader.interrupt();
+    }
+
+    private void read() {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            MappedByteBuffer head = channel.map(FileChannel.MapMode.READ_ONLY, 0, Math.min(size, HEADER));
+            if (size >= HEADER && head.getInt() == MAGIC) {
+                int version = head.get();
+                if (version != VERSION) {
+                    throw new IOException("Unsupported detector feed version " + version);
+                }
+                readBinary(channel, size);
+            } else {
+                readCsv(channel, size);
+            }
+        } catch (IOException e) {
+            failure = e;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            finished = true;
+        }
+    }
+
+    private void readBinary(FileChannel channel, long size) throws IOException, InterruptedException {
+        long end = HEADER + (size - HEADER) / 8 * 8;
+        for (long position = HEADER; position < end; ) {
+            long length = Math.min(WINDOW, end - position);
+            MappedByteBuffer in = channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+            while (in.hasRemaining()) {
+                line++;
+                long arrival = in.getLong();
+                check(ArrivalQueue.tick(arrival), ArrivalQueue.entry(arrival));
+                put(arrival);
+            }
+            position += length;
+        }
+    }
+
+    // Lines never straddle a window: each window after the first starts at the
+    // line the previous one cut off.
+    private void readCsv(FileChannel channel, long size) throws IOException, InterruptedException {
+        long position = 0;
+        while (position < size) {
+            long length = Math.min(WINDOW, size - position);
+            MappedByteBuffer in = channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+            boolean last = position + length == size;
+            int start = 0;
+            for (int i = 0; i < length; i++) {
+                if (in.get(i) == '\n') {
+                    parseLine(in, start, i);
+                    start = i + 1;
+                }
+            }
+            if (last && start < length) {
+                parseLine(in, start, (int) length);
+                start = (int) length;
+            }
+            if (start == 0 && !last) {
+                throw new IOException(path + ": line " + (line + 1) + " is longer than " + WINDOW + " bytes");
+            }
+            position += start;
+        }
+    }
+
+    private void parseLine(MappedByteBuffer in, int from, int to) throws IOException, InterruptedException {
+        line++;
+        while (from < to && isSpace(in.get(from))) {
+            from++;
+        }
+        while (to > from && isSpace(in.get(to - 1))) {
+            to--;
+        }
+        if (from == to || in.get(from) == '#') {
+            return;
+        }
+        int comma = indexOf(in, from, to, ',');
+        if (!isDigit(in.get(from))) {
+            if (line == 1) {
+                return;
+            }
+            throw bad("tick");
+        }
+        long tick = number(in, from, comma);
+        if (tick < 0 || comma == to) {
+            throw bad("tick,approach");
+        }
+        int next = indexOf(in, comma + 1, to, ',');
+        int entry = token(in, comma + 1, next, dirNames);
+        if (entry < -1) {
+            entry = entryOf[-entry - 2];
+        }
+        int color = ArrivalQueue.ANY_COLOR;
+        if (next < to) {
+            color = token(in, next + 1, to, colorNames);
+            color = color < -1 ? -color - 2 : color;
+            if (color < 0 || color >= colorNames.length) {
+                throw bad("color");
+            }
+        }
+        check(tick, entry);
+        put(ArrivalQueue.encode(tick, entry, color));
+    }
+
+    private void check(long tick, int entry) throws IOException {
+        if (entry < 0 || entry >= entries) {
+            throw bad("approach");
+        }
+        if (tick < lastTick) {
+            throw new IOException(path + ": ticks go back at record " + line);
+        }
+        lastTick = tick;
+    }
+
+    private void put(long arrival) throws InterruptedException {
+        long tick = ArrivalQueue.tick(arrival);
+        next = tick;
+        for (int spins = 0; tick > limit || !queue.offer(arrival); spins++) {
+            if (Thread.interrupted()) {
+                throw new InterruptedException();
+            }
+            if (spins < 100) {
+                Thread.onSpinWait();
+            } else {
+                LockSupport.parkNanos(50_000);
+            }
+        }
+        records++;
+    }
+
+    // A number, -2 - k for the k-th of the case-insensitive names, or -1 for neither.
+    private static int token(MappedByteBuffer in, int from, int to, byte[][] names) {
+        from = trim(in, from, to);
+        while (to > from && isSpace(in.get(to - 1))) {
+            to--;
+        }
+        if (from < to && isDigit(in.get(from))) {
+            long n = number(in, from, to);
+            return n > Integer.MAX_VALUE ? -1 : (int) n;
+        }
+        for (int k = 0; k < names.length; k++) {
+            byte[] name = names[k];
+            if (name.length != to - from) {
+                continue;
+            }
+            int i = 0;
+            while (i < name.length && (in.get(from + i) | 0x20) == name[i]) {
+                i++;
+            }
+            if (i == name.length) {
+                return -k - 2;
+            }
+        }
+        return -1;
+    }
+
+    private static long number(MappedByteBuffer in, int from, int to) {
+        from = trim(in, from, to);
+        long n = 0;
+        for (int i = from; i < to; i++) {
+            byte b = in.get(i);
+            if (isDigit(b)) {
+                n = n * 10 + (b - '0');
+            } else if (!isSpace(b)) {
+                return -1;
+            }
+        }
+        return n;
+    }
+
+    private static int trim(MappedByteBuffer in, int from, int to) {
+        while (from < to && isSpace(in.get(from))) {
+            from++;
+        }
+        return from;
+    }
+
+    private static int indexOf(MappedByteBuffer in, int from, int to, char c) {
+        for (int i = from; i < to; i++) {
+            if (in.get(i) == c) {
+                return i;
+            }
+        }
+        return to;
+    }
+
+    private static boolean isDigit(byte b) {
+        return b >= '0' && b <= '9';
+    }
+
+    private static boolean isSpace(byte b) {
+        return b == ' ' || b == '\t' || b == '\r';
+    }
+
+    private IOException bad(String what) {
+        return new IOException(path + ": bad " + what + " on line " + line);
+    }
+}
@@ -0,0 +1,203 @@
+package jraffic;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.locks.LockSupport;
+
+// Feeds an engine from recorded detector logs. Each DetectorFeed reads one file
+// on its own thread into its own ArrivalQueue; the simulation thread calls
+// inject() once per tick, which takes the arrivals due by that tick without
+// ever waiting, queues them per entry and spawns whatever the entry points can
+// take under the engine's spacing rules, as TrafficDemand does.
+//
+// Backlogs are bounded as TrafficDemand's are, but nothing is dropped: while the
+// next arrival's entry is full no arrival is taken past it, so the feeds' queues
+// fill and the feeds wait. A saturated log is read no faster than its entries
+// clear, in memory fixed by the queue and Backlog limits.
+//
+// Feeds may read up to LOOKAHEAD ticks ahead of the simulation. Every feed has
+// a queue of its own, so a dense feed that fills its queue only holds up itself
+// and can never starve another. The queues are merged by tick, and an arrival
+// is taken only once every other feed has either queued an arrival after it or
+// offered everything up to its tick; arrivals of one tick come out by entry and
+// color across the feeds' heads, in a fixed order whichever reader was faster.
+// Which arrivals a tick takes is then a function of the logs alone, which keeps
+// a run repeatable.
+//
+// Except when a reader falls behind the simulation: the arrivals it has yet to
+// offer, and every arrival after them, wait for it and are counted as late when
+// they arrive. They keep their order, but vehicles that spawned meanwhile are
+// ahead of them, so a run with late arrivals may spawn in a different order
+// than a repeat of it. prime() keeps readers ahead at the start. Arrivals held
+// behind a full entry are counted as late too; those follow from the logs and
+// do repeat.
+public class DetectorReplay {
+
+    public static final int DEFAULT_CAPACITY = 1 << 16;
+    public static final long LOOKAHEAD = 1 << 16;
+
+    private final TrafficEngine engine;
+    private final int capacity;
+    private final List<DetectorFeed> feeds = new ArrayList<>();
+    // Each feed's queue, in the same order.
+    private final List<ArrivalQueue> queues = new ArrayList<>();
+    private final Backlog backlog;
+    // The feeds may offer up to this tick.
+    private long allowed = -1;
+    // Draws the color of arrivals whose log did not give one.
+    private final SeededRandom random;
+
+    public long received;
+    public long injected;
+    public long late;
+
+    public DetectorReplay(TrafficEngine engine, SeededRandom random) {
+        this(engine, random, DEFAULT_CAPACITY);
+    }
+
+    // capacity is per feed.
+    public DetectorReplay(TrafficEngine engine, SeededRandom random, int capacity) {
+        this.engine = engine;
+        this.random = random;
+        this.capacity = capacity;
+        this.backlog = new Backlog(engine.entryCount(), Backlog.DEFAULT_LIMIT);
+    }
+
+    // Starts reading another log.
+    public DetectorFeed add(Path path) {
+        ArrivalQueue queue = new ArrivalQueue(capacity);
+        DetectorFeed feed = new DetectorFeed(path, queue, engine);
+        feed.allow(allowed);
+        feeds.add(feed);
+        queues.add(queue);
+        return feed;
+    }
+
+    public List<DetectorFeed> feeds() {
+        return feeds;
+    }
+
+    // Waits until every feed has offered everything up to LOOKAHEAD ticks past
+    // tick, or filled its queue, so a run does not start ahead of its readers.
+    public void prime(long tick) {
+        allow(tick);
+        while (true) {
+            boolean ahead = true;
+            for (int i = 0; i < feeds.size(); i++) {
+                ArrivalQueue queue = queues.get(i);
+                ahead &= feeds.get(i).ahead() || queue.size() >= queue.capacity();
+            }
+            if (ahead) {
+                return;
+            }
+            LockSupport.parkNanos(50_000);
+        }
+    }
+
+    public void inject(long tick) {
+        if (tick > allowed - LOOKAHEAD / 2) {
+            allow(tick);
+        }
+        for (int i = earliest(tick); i >= 0; i = earliest(tick)) {
+            ArrivalQueue queue = queues.get(i);
+            long arrival = queue.peek();
+            int entry = ArrivalQueue.entry(arrival);
+            if (backlog.isFull(entry)) {
+                break;
+            }
+            queue.remove();
+            if (ArrivalQueue.tick(arrival) < tick) {
+                late++;
+            }
+            int color = ArrivalQueue.color(arrival);
+            if (color == ArrivalQueue.ANY_COLOR) {
+                color = Vehicle.randColor(random);
+            }
+            backlog.add(entry, color);
+            received++;
+        }
+        for (int e = 0; e < backlog.entries(); e++) {
+            while (!backlog.isEmpty(e) && engine.spawn(e, backlog.peek(e))) {
+                backlog.remove(e);
+                injected++;
+            }
+        }
+    }
+
+    // The first tick from tick on where inject has anything to do, for engines
+    // that jump over quiet stretches. Never past the tick where inject lets the
+    // feeds read further, nor past what a feed has yet to offer.
+    public long nextInjection(long tick) {
+        if (backlog.total() > 0) {
+            return tick;
+        }
+        if (finished()) {
+            return Long.MAX_VALUE;
+        }
+        long next = Math.max(tick, allowed - LOOKAHEAD / 2 + 1);
+        for (int i = 0; i < feeds.size(); i++) {
+            long reached = feeds.get(i).reached();
+            ArrivalQueue queue = queues.get(i);
+            if (queue.ready()) {
+                next = Math.min(next, ArrivalQueue.tick(queue.peek()));
+            } else if (reached < Long.MAX_VALUE) {
+                next = Math.min(next, reached + 1);
+            }
+        }
+        return Math.max(tick, next);
+    }
+
+    // Every feed read to the end and every arrival taken from the queues.
+    public boolean finished() {
+        for (int i = 0; i < feeds.size(); i++) {
+            if (!feeds.get(i).finished() || queues.get(i).ready()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Arrivals waiting over all entries, and the most there ever were at once.
+    public int backlog() {
+        return backlog.total();
+    }
+
+    public int maxBacklog() {
+        return backlog.peak();
+    }
+
+    private void allow(long tick) {
+        allowed = tick + LOOKAHEAD;
+        for (DetectorFeed feed : feeds) {
+            feed.allow(allowed);
+        }
+    }
+
+    // The feed whose queue holds the next arrival due by tick, or -1 when there
+    // is none or a feed with an empty queue could still offer one before it. A
+    // feed's progress is read before its queue, so whatever it offered up to
+    // that tick is already there.
+    private int earliest(long tick) {
+        int best = -1;
+        long first = Long.MAX_VALUE;
+        long until = tick;
+        for (int i = 0; i < feeds.size(); i++) {
+            long reached = feeds.get(i).reached();
+            ArrivalQueue queue = queues.get(i);
+            if (!queue.ready()) {
+                until = Math.min(until, reached);
+            } else if (queue.peek() < first) {
+                first = queue.peek();
+                best = i;
+            }
+        }
+        return best >= 0 && ArrivalQueue.tick(first) <= until ? best : -1;
+    }
+
+    public void close() {
+        for (DetectorFeed feed : feeds) {
+            feed.close();
+        }
+    }
+}
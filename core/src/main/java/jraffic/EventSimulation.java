@@ -0,0 +1,256 @@
+package jraffic;
+
+import java.util.stream.IntStream;
+
+// Discrete-event alternative to stepping a Simulation every tick. Between
+// events every vehicle either holds still or drives on at 2 units per tick
+// without meeting anything, so such a stretch is applied in one jump. The
+// events are: a vehicle reaching a coordinate of the layout where a stop line,
+// a queue or intersection edge, its turn or the map edge can change what it
+// does; a vehicle closing to its safe distance behind one that stands, or a
+// blocked vehicle's leader pulling away. Inside a jump the controller skips its quiet stretches
+// in one call and runs its decisions one update at a time, which vehicles only
+// notice when one of them waits at a stop line. Ticks holding a vehicle event
+// run through Simulation.update, so the trajectory is the tick engine's
+// exactly. Metrics record every tick, so with metrics attached every tick runs.
+public class EventSimulation extends Simulation {
+
+    private static final MovementDirection[] DIRS = MovementDirection.values();
+
+    private static final int STOPPED = 0;
+    private static final int BLOCKED = 1;
+    private static final int DRIVING = 2;
+
+    // Progress values, per direction of travel, at which a vehicle driving that
+    // way enters a new region as far as the tick engine's checks go: its stop
+    // line, the spot past it, and where its queue and the intersection start
+    // and end. A vehicle may step across one on the last tick of a jump, since
+    // the counters it changes are only read on the next tick.
+    private final int[][] edges = new int[DIRS.length][];
+    // Turn point per direction * colors + color, which acts within the step
+    // that reaches it; MAX_VALUE for routes that drive straight on.
+    private final int[] turns;
+    // The last progress before despawning.
+    private final int[] exit = new int[DIRS.length];
+
+    // Set by horizon(): some vehicle stands on its stop line and would see the lights change.
+    private boolean waiting;
+
+    public long jumps;
+    public long steppedTicks;
+
+    public EventSimulation() {
+        this(new SeededRandom(System.nanoTime()));
+    }
+
+    public EventSimulation(SeededRandom random) {
+        this(random, new TrafficConfig());
+    }
+
+    public EventSimulation(SeededRandom random, TrafficConfig config) {
+        this(random, config, Layout.DEFAULT);
+    }
+
+    public EventSimulation(SeededRandom random, TrafficConfig config, Layout layout) {
+        super(random, config, layout);
+        for (MovementDirection dir : DIRS) {
+            int d = dir.ordinal();
+            int stop = along(dir, layout.stop[d]);
+            int[] queue = span(dir, layout.queueFrom[d], layout.queueTo[d]);
+            int[] box = vertical(dir) ? span(dir, layout.boxTop, layout.boxBottom)
+                    : span(dir, layout.boxLeft, layout.boxRight);
+            edges[d] = IntStream.of(stop, stop + 1, queue[0], queue[1] + 1, box[0], box[1] + 1)
+                    .distinct().sorted().toArray();
+            exit[d] = along(dir, mapEdge(layout, dir));
+        }
+        turns = new int[layout.turnTo.length];
+        int colors = turns.length / DIRS.length;
+        for (int k = 0; k < turns.length; k++) {
+            turns[k] = layout.turnTo[k] < 0 ? Integer.MAX_VALUE
+                    : LaneIndex.progress(layout.turnX[k], layout.turnY[k], DIRS[k / colors]);
+        }
+    }
+
+    private static boolean vertical(MovementDirection dir) {
+        return dir == MovementDirection.North || dir == MovementDirection.South;
+    }
+
+    // The map edge a vehicle driving dir leaves across.
+    private static int mapEdge(Layout layout, MovementDirection dir) {
+        switch (dir) {
+            case North:
+                return layout.mapBottom;
+            case South:
+                return layout.mapTop;
+            case West:
+                return layout.mapLeft;
+            default:
+                return layout.mapRight;
+        }
+    }
+
+    // Progress of a coordinate on the axis dir drives along.
+    private static int along(MovementDirection dir, int a) {
+        return LaneIndex.progress(a, a, dir);
+    }
+
+    // Progress range of the axis range [from, to], lowest first.
+    private static int[] span(MovementDirection dir, int from, int to) {
+        int a = along(dir, from);
+        int b = along(dir, to);
+        return new int[] { Math.min(a, b), Math.max(a, b) };
+    }
+
+    @Override
+    public void run(long ticks) {
+        advanceTo(tick + ticks);
+    }
+
+    // Runs up to the start of tick target. Arrivals have to be injected by the
+    // caller at the ticks they fall on, see TrafficDemand.nextInjection.
+    public void advanceTo(long target) {
+        while (tick < target) {
+            if (metrics != null || jump(target - tick) == 0) {
+                update();
+                steppedTicks++;
+            }
+        }
+    }
+
+    private int motion(Vehicle v, Vehicle leader) {
+        if (TrafficSystem.atRedLight(layout, hub, v.dir, v.x, v.y)) {
+            return STOPPED;
+        }
+        if (leader != null && LaneIndex.progress(leader) - LaneIndex.progress(v) <= config.safeDistance) {
+            return BLOCKED;
+        }
+        return DRIVING;
+    }
+
+    // Ticks from now in which no vehicle meets an event. Lanes are walked front
+    // to back so each vehicle knows whether its leader drives.
+    private long horizon() {
+        long horizon = Long.MAX_VALUE;
+        int safe = config.safeDistance;
+        waiting = false;
+        for (MovementDirection dir : DIRS) {
+            Vehicle leader = null;
+            int leaderMotion = STOPPED;
+            for (int i = lanes.size(dir) - 1; i >= 0; i--) {
+                Vehicle v = lanes.get(dir, i);
+                int p = LaneIndex.progress(v);
+                // Two vehicles on one spot can pass each other; leave that to update.
+                if (leader != null && LaneIndex.progress(leader) == p) {
+                    return 0;
+                }
+                int gap = leader != null ? LaneIndex.progress(leader) - p : 0;
+                int motion = motion(v, leader);
+                switch (motion) {
+                    case DRIVING:
+                        horizon = Math.min(horizon, untilEdge(v, p));
+                        if (leader != null && leaderMotion != DRIVING) {
+                            horizon = Math.min(horizon, (gap - safe + 1) / 2);
+                        }
+                        break;
+                    case BLOCKED:
+                        // The leader may already have stepped when this one checks.
+                        if (leaderMotion == DRIVING) {
+                            horizon = Math.min(horizon, (safe - gap) / 2);
+                        }
+                        break;
+                    default:
+                        break;
+                }
+                if (horizon == 0) {
+                    return 0;
+                }
+                waiting |= layout.atStopLine(v.dir, v.x, v.y);
+                leader = v;
+                leaderMotion = motion;
+            }
+        }
+        return horizon;
+    }
+
+    // Ticks a driving vehicle can take while every tick starts short of the next
+    // edge, no step lands on a turn it would take, and it stays on the map.
+    private long untilEdge(Vehicle v, int p) {
+        int d = v.dir.ordinal();
+        long ticks = (exit[d] - p) / 2;
+        for (int edge : edges[d]) {
+            if (edge > p) {
+                ticks = Math.min(ticks, (edge - p + 1) / 2);
+                break;
+            }
+        }
+        if (!v.turned) {
+            int turn = turns[d * Vehicle.COLOR_NAMES.length + v.colorId];
+            if (turn > p && turn != Integer.MAX_VALUE) {
+                ticks = Math.min(ticks, (turn - p + 1) / 2 - 1);
+            }
+        }
+        return Math.max(0, ticks);
+    }
+
+    // Runs up to limit ticks in one go and returns how many, or 0 when the next
+    // tick holds an event. No vehicle crosses an edge before the last tick, so
+    // the controller sees the same counters throughout, and lane order holds.
+    private long jump(long limit) {
+        long horizon = Math.min(limit, horizon());
+        long done = 0;
+        while (done < horizon) {
+            long quiet = Math.min(horizon - done, controller.quietTicks(hub, counters));
+            if (quiet > 0) {
+                controller.skip(hub, counters, quiet);
+                done += quiet;
+            } else if (!waiting) {
+                controller.update(hub, counters);
+                done++;
+            } else {
+                break;
+            }
+        }
+        if (done == 0) {
+            return 0;
+        }
+        // Back to front, so motion is judged against leaders that have not moved
+        // yet. Away from stop lines the lights cannot change it.
+        int distance = (int) (2 * done);
+        for (MovementDirection dir : DIRS) {
+            int size = lanes.size(dir);
+            for (int i = 0; i < size; i++) {
+                Vehicle v = lanes.get(dir, i);
+                int motion = motion(v, i + 1 < size ? lanes.get(dir, i + 1) : null);
+                v.moving = motion != STOPPED;
+                if (motion == DRIVING) {
+                    counters.remove(v);
+                    drive(v, distance);
+                    counters.add(v);
+                } else {
+                    v.stoppedTicks += (int) done;
+                }
+            }
+        }
+        exits.clear();
+        tick += done;
+        jumps++;
+        return done;
+    }
+
+    private static void drive(Vehicle v, int distance) {
+        switch (v.dir) {
+            case North:
+                v.y += distance;
+                break;
+            case South:
+                v.y -= distance;
+                break;
+            case West:
+                v.x -= distance;
+                break;
+            case East:
+                v.x += distance;
+                break;
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package jraffic;
+
+// Every phase in turn for the same green time, whatever the queues.
+public class FixedTimeController implements SignalController {
+
+    public static final int GREEN = 300;
+
+    private final int green;
+    private final TrafficConfig config;
+
+    public FixedTimeController(int green) {
+        this(green, new TrafficConfig());
+    }
+
+    public FixedTimeController(int green, TrafficConfig config) {
+        this.green = green;
+        this.config = config;
+    }
+
+    @Override
+    public void update(TrafficSystem.TrafficHub hub, TrafficSystem.Counters counters) {
+        boolean clear = counters.inIntersection == 0;
+        hub.phaseDuration = green;
+        hub.timer++;
+        if (hub.timer >= green && hub.pendingPhase == null) {
+            hub.timer = 0;
+            TrafficSystem.requestPhase(hub, TrafficSystem.nextPhase(hub.phase), clear);
+        }
+        TrafficSystem.settle(config, hub, clear);
+    }
+
+    @Override
+    public long quietTicks(TrafficSystem.TrafficHub hub, TrafficSystem.Counters counters) {
+        long quiet = TrafficSystem.settleQuietTicks(config, hub);
+        if (hub.pendingPhase == null) {
+            quiet = Math.min(quiet, green - hub.timer - 1);
+        }
+        return Math.max(0, quiet);
+    }
+
+    @Override
+    public void skip(TrafficSystem.TrafficHub hub, TrafficSystem.Counters counters, long ticks) {
+        hub.phaseDuration = green;
+        hub.timer += (int) ticks;
+        TrafficSystem.skipSettle(hub, ticks);
+    }
+
+    @Override
+    public String name() {
+        return "fixed";
+    }
+}
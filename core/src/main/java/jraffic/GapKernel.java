@@ -0,0 +1,37 @@
+package jraffic;
+
+// Following-distance and stop-line checks for a stretch of one lane at a time,
+// as VehicleStore's two-phase tick decides them. The arrays are in lane order
+// and hold progress along the lane: progress[k] is a vehicle's, ahead[k] that
+// of the first vehicle strictly ahead of it (Integer.MAX_VALUE for none), and
+// stop the stop line's. For every k in [from, to) a kernel sets
+//   moving[k]   = !(red && progress[k] == stop)
+//   stepping[k] = moving[k] && ahead[k] > progress[k] + safe
+// Every kernel gives the same results; they differ only in speed.
+public interface GapKernel {
+
+    String[] NAMES = { "scalar", "vector" };
+
+    void decide(int[] progress, int[] ahead, int from, int to, int stop, boolean red, int safe, boolean[] moving,
+            boolean[] stepping);
+
+    String name();
+
+    // "vector" is the Vector API kernel when the JVM runs with
+    // --add-modules jdk.incubator.vector, and the scalar one otherwise.
+    static GapKernel create(String name) {
+        switch (name) {
+            case "scalar":
+                return new ScalarGapKernel();
+            case "vector":
+                try {
+                    return (GapKernel) Class.forName("jraffic.VectorGapKernel").getDeclaredConstructor()
+                            .newInstance();
+                } catch (ReflectiveOperationException | LinkageError e) {
+                    return new ScalarGapKernel();
+                }
+            default:
+                throw new IllegalArgumentException("Unknown kernel: " + name);
+        }
+    }
+}
@@ -0,0 +1,284 @@
+package jraffic;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+// A rows x cols city of intersections. Every intersection is a full Simulation
+// with its own TrafficHub in local coordinates. A tick first steps all
+// intersections in parallel; they share nothing during that phase. Then a
+// single-threaded exchange, in fixed cell order, hands each vehicle that left a
+// map to the neighbor it was driving towards. The outcome therefore does not
+// depend on how the pool scheduled the step.
+//
+// A handed-off vehicle waits in the neighbor's inbox until its spawn point is
+// clear, admitted on spacing alone as arrivals at the edge are. While more than
+// WAITING_LIMIT vehicles per cell wait in inboxes the city takes no new
+// arrivals at its edge; they stay in the caller's backlog. Vehicles already in
+// the city keep moving, so the inboxes drain and never hold more than the limit
+// plus the vehicles on the cells' roads. Stopping vehicles at a full inbox's
+// upstream exit instead gridlocks: the held lanes back up through the turns
+// into the cells that feed them, around any loop of the grid.
+public class Grid implements TrafficEngine {
+
+    private static final int SEQUENTIAL_THRESHOLD = 4;
+    public static final int WAITING_LIMIT = 8;
+    private static final MovementDirection[] DIRS = MovementDirection.values();
+
+    public final int rows;
+    public final int cols;
+    public final Simulation[] cells;
+
+    // Vehicles waiting to enter each cell, per arriving direction.
+    private final List<List<ArrayDeque<Vehicle>>> inboxes = new ArrayList<>();
+    private final ForkJoinPool pool;
+    public final SeededRandom random;
+
+    public long tick;
+    public long spawned;
+    public long despawned;
+    public long handoffs;
+    // Vehicles waiting in inboxes after the last exchange, and the most ever.
+    private int waiting;
+    public int maxWaiting;
+    // Records every trip through the city as its vehicle leaves at the edge,
+    // from the approach it entered the city on.
+    public TripStats trips;
+
+    public Grid(int rows, int cols, ForkJoinPool pool, SeededRandom random) {
+        this(rows, cols, pool, random, new TrafficConfig());
+    }
+
+    public Grid(int rows, int cols, ForkJoinPool pool, SeededRandom random, TrafficConfig config) {
+        this(rows, cols, pool, random, config, Layout.DEFAULT);
+    }
+
+    // Every cell shares config and layout.
+    public Grid(int rows, int cols, ForkJoinPool pool, SeededRandom random, TrafficConfig config, Layout layout) {
+        this.rows = rows;
+        this.cols = cols;
+        this.pool = pool;
+        this.random = random;
+        this.cells = new Simulation[rows * cols];
+        for (int i = 0; i < cells.length; i++) {
+            cells[i] = new Simulation(random.split(), config, layout);
+            List<ArrayDeque<Vehicle>> inbox = new ArrayList<>();
+            for (int d = 0; d < DIRS.length; d++) {
+                inbox.add(new ArrayDeque<>());
+            }
+            inboxes.add(inbox);
+        }
+    }
+
+    public Simulation cell(int row, int col) {
+        return cells[row * cols + col];
+    }
+
+    @Override
+    public void update() {
+        pool.invoke(new StepRange(0, cells.length));
+        exchange();
+        tick++;
+    }
+
+    // A vehicle its inbox cannot let in yet stands still for the tick.
+    private void stepCell(int i) {
+        Simulation cell = cells[i];
+        for (ArrayDeque<Vehicle> waiting : inboxes.get(i)) {
+            while (!waiting.isEmpty() && cell.enter(waiting.peek())) {
+                waiting.poll();
+            }
+            for (Vehicle v : waiting) {
+                v.stoppedTicks++;
+            }
+        }
+        cell.update();
+    }
+
+    private void exchange() {
+        for (int i = 0; i < cells.length; i++) {
+            for (Vehicle v : cells[i].exits) {
+                int target = neighbor(i, v.dir);
+                if (target < 0) {
+                    if (trips != null) {
+                        trips.record(v, tick + 1 - v.entryTick);
+                    }
+                    despawned++;
+                } else {
+                    inboxes.get(target).get(v.dir.ordinal()).add(v);
+                    handoffs++;
+                }
+            }
+        }
+        waiting = waiting();
+        maxWaiting = Math.max(maxWaiting, waiting);
+    }
+
+    // Vehicles handed off and not yet let into their next cell.
+    public int waiting() {
+        int count = 0;
+        for (List<ArrayDeque<Vehicle>> inbox : inboxes) {
+            for (ArrayDeque<Vehicle> waiting : inbox) {
+                count += waiting.size();
+            }
+        }
+        return count;
+    }
+
+    private int neighbor(int cell, MovementDirection dir) {
+        int row = cell / cols;
+        int col = cell % cols;
+        switch (dir) {
+            case North:
+                row++;
+                break;
+            case South:
+                row--;
+                break;
+            case West:
+                col--;
+                break;
+            case East:
+                col++;
+                break;
+        }
+        if (row < 0 || row >= rows || col < 0 || col >= cols) {
+            return -1;
+        }
+        return row * cols + col;
+    }
+
+    // Roads entering the city from its edge are numbered top row first, then the
+    // bottom row, the left column and the right column.
+    private Simulation edgeCell(int edge) {
+        if (edge < cols) {
+            return cell(0, edge);
+        } else if (edge < 2 * cols) {
+            return cell(rows - 1, edge - cols);
+        } else if (edge < 2 * cols + rows) {
+            return cell(edge - 2 * cols, 0);
+        }
+        return cell(edge - 2 * cols - rows, cols - 1);
+    }
+
+    @Override
+    public MovementDirection entryDirection(int edge) {
+        if (edge < cols) {
+            return MovementDirection.North;
+        } else if (edge < 2 * cols) {
+            return MovementDirection.South;
+        } else if (edge < 2 * cols + rows) {
+            return MovementDirection.East;
+        }
+        return MovementDirection.West;
+    }
+
+    @Override
+    public int entryCount() {
+        return 2 * (rows + cols);
+    }
+
+    // Whether the edge takes arrivals, which it stops doing while the inboxes
+    // are over WAITING_LIMIT.
+    public boolean open() {
+        return waiting <= WAITING_LIMIT * cells.length;
+    }
+
+    public boolean addAtEdge(int edge) {
+        if (open() && edgeCell(edge).addVehicleAt(entryDirection(edge))) {
+            spawned++;
+            return true;
+        }
+        return false;
+    }
+
+    @Override
+    public boolean spawn(int edge, int color) {
+        Simulation cell = edgeCell(edge);
+        if (open() && cell.spawn(entryDirection(edge).ordinal(), color)) {
+            spawned++;
+            return true;
+        }
+        return false;
+    }
+
+    @Override
+    public void addRandom() {
+        addAtEdge(random.nextInt(entryCount()));
+    }
+
+    @Override
+    public int vehicleCount() {
+        int count = waiting();
+        for (Simulation cell : cells) {
+            count += cell.vehicleList.size();
+        }
+        return count;
+    }
+
+    @Override
+    public long spawned() {
+        return spawned;
+    }
+
+    @Override
+    public long despawned() {
+        return despawned;
+    }
+
+    @Override
+    public long tick() {
+        return tick;
+    }
+
+    @Override
+    public TrafficSystem.TrafficHub hub() {
+        return cells[0].hub;
+    }
+
+    @Override
+    public TrafficSystem.Counters counters() {
+        return cells[0].counters;
+    }
+
+    @Override
+    public long stateHash() {
+        long h = 0;
+        for (int i = 0; i < cells.length; i++) {
+            h = TrafficEngine.hash(h, cells[i].stateHash());
+            for (ArrayDeque<Vehicle> waiting : inboxes.get(i)) {
+                for (Vehicle v : waiting) {
+                    h = TrafficEngine.hash(h, Vehicle.hash(v.dir, v.startDir, v.colorId, v.turned, v.moving));
+                }
+            }
+        }
+        return h;
+    }
+
+    private class StepRange extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final int from;
+        private final int to;
+
+        StepRange(int from, int to) {
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= SEQUENTIAL_THRESHOLD) {
+                for (int i = from; i < to; i++) {
+                    stepCell(i);
+                }
+                return;
+            }
+            int mid = (from + to) >>> 1;
+            invokeAll(new StepRange(from, mid), new StepRange(mid, to));
+        }
+    }
+}
@@ -0,0 +1,510 @@
+package jraffic;
+
+import java.io.BufferedWriter;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+// Command-line batch runner for every engine, without a display.
+public class Headless {
+
+    private static void usage() {
+        System.err.println("Usage: Headless [--ticks N] [--spawn-every N] [--max-vehicles N]"
+                + " [--store objects|soa|parallel|events|kinematic] [--grid ROWSxCOLS] [--threads N] [--kernel scalar|vector] [--seed N] [--hash] [--report-alloc]"
+                + " [--demand RATES] [--routes BLUE,YELLOW,BROWN] [--profile TICK:FACTOR,...] [--profile-period N]"
+                + " [--metrics FILE.csv|FILE.json] [--metrics-every N] [--trips FILE.csv|FILE.json]"
+                + " [--record FILE] [--controller " + String.join("|", SignalController.NAMES) + "]"
+                + " [--config NAME=VALUE,...] [--layout FILE|NAME] [--telemetry PORT]"
+                + " [--checkpoint FILE] [--restore FILE] [--feed FILE[,FILE...]]");
+        System.err.println("Config: " + new TrafficConfig());
+        System.exit(2);
+    }
+
+    private static final java.lang.management.ThreadMXBean THREADS =
+            java.lang.management.ManagementFactory.getThreadMXBean();
+
+    private static long allocatedBytes() {
+        if (THREADS instanceof com.sun.management.ThreadMXBean) {
+            return ((com.sun.management.ThreadMXBean) THREADS).getCurrentThreadAllocatedBytes();
+        }
+        return -1;
+    }
+
+    private static TrafficEngine engine(String store, int maxVehicles, String controller, TrafficConfig config,
+            Layout layout, SeededRandom random, ForkJoinPool pool) {
+        switch (store) {
+            case "objects":
+                Simulation sim = new Simulation(random, config, layout);
+                sim.maxVehicles = maxVehicles;
+                sim.controller = SignalController.create(controller, config);
+                return sim;
+            case "events":
+                EventSimulation events = new EventSimulation(random, config, layout);
+                events.maxVehicles = maxVehicles;
+                events.controller = SignalController.create(controller, config);
+                return events;
+            case "soa":
+            case "parallel":
+                VehicleStore soa = new VehicleStore(random, config, layout);
+                soa.maxVehicles = maxVehicles;
+                soa.controller = SignalController.create(controller, config);
+                soa.pool = pool;
+                return soa;
+            case "kinematic":
+                KinematicStore kinematic = new KinematicStore(random, config, layout);
+                kinematic.maxVehicles = maxVehicles;
+                kinematic.controller = SignalController.create(controller, config);
+                return kinematic;
+            default:
+                usage();
+                return null;
+        }
+    }
+
+    // Grid cells each record into their own Metrics; exports fold them into one.
+    private static void export(List<Metrics> metrics, PrintWriter out, boolean json, long tick) {
+        Metrics total = metrics.get(0);
+        if (metrics.size() > 1) {
+            total = new Metrics();
+            for (Metrics m : metrics) {
+                m.addTo(total);
+            }
+        }
+        if (json) {
+            total.writeJson(out, tick);
+        } else {
+            total.writeCsv(out, tick);
+        }
+        out.flush();
+    }
+
+    private static TripStats total(List<TripStats> trips) {
+        if (trips.size() == 1) {
+            return trips.get(0);
+        }
+        TripStats total = new TripStats();
+        for (TripStats t : trips) {
+            t.addTo(total);
+        }
+        return total;
+    }
+
+    // Headless batch run: no display needed, runs as fast as the CPU allows.
+    public static void main(String[] args) throws IOException {
+
+        long ticks = 1_000_000;
+        int spawnEvery = 30;
+        int maxVehicles = Simulation.MAX_VEHICLES;
+        String store = "objects";
+        String grid = null;
+        int threads = Runtime.getRuntime().availableProcessors();
+        boolean reportAlloc = false;
+        boolean hash = false;
+        long seed = System.nanoTime();
+        String demandRates = null;
+        String routes = null;
+        String profile = null;
+        long profilePeriod = 0;
+        String metricsFile = null;
+        String tripsFile = null;
+        long metricsEvery = 0;
+        String recordFile = null;
+        String controller = "adaptive";
+        TrafficConfig config = new TrafficConfig();
+        Layout layout = Layout.DEFAULT;
+        int telemetryPort = -1;
+        String checkpointFile = null;
+        String restoreFile = null;
+        String feedFiles = null;
+        String kernel = null;
+
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("--report-alloc")) {
+                reportAlloc = true;
+                continue;
+            }
+            if (args[i].equals("--hash")) {
+                hash = true;
+                continue;
+            }
+            if (i + 1 >= args.length) {
+                usage();
+            }
+            switch (args[i]) {
+                case "--ticks":
+                    ticks = Long.parseLong(args[++i]);
+                    break;
+                case "--spawn-every":
+                    spawnEvery = Integer.parseInt(args[++i]);
+                    break;
+                case "--max-vehicles":
+                    maxVehicles = Integer.parseInt(args[++i]);
+                    break;
+                case "--store":
+                    store = args[++i];
+                    break;
+                case "--grid":
+                    grid = args[++i];
+                    break;
+                case "--threads":
+                    threads = Integer.parseInt(args[++i]);
+                    break;
+                case "--kernel":
+                    kernel = args[++i];
+                    break;
+                case "--seed":
+                    seed = Long.parseLong(args[++i]);
+                    break;
+                case "--demand":
+                    demandRates = args[++i];
+                    break;
+                case "--routes":
+                    routes = args[++i];
+                    break;
+                case "--profile":
+                    profile = args[++i];
+                    break;
+                case "--profile-period":
+                    profilePeriod = Long.parseLong(args[++i]);
+                    break;
+                case "--metrics":
+                    metricsFile = args[++i];
+                    break;
+                case "--trips":
+                    tripsFile = args[++i];
+                    break;
+                case "--metrics-every":
+                    metricsEvery = Long.parseLong(args[++i]);
+                    break;
+                case "--record":
+                    recordFile = args[++i];
+                    break;
+                case "--controller":
+                    controller = args[++i];
+                    break;
+                case "--config":
+                    config.parse(args[++i]);
+                    break;
+                case "--layout":
+                    layout = Layout.named(args[++i]);
+                    break;
+                case "--telemetry":
+                    telemetryPort = Integer.parseInt(args[++i]);
+                    break;
+                case "--checkpoint":
+                    checkpointFile = args[++i];
+                    break;
+                case "--restore":
+                    restoreFile = args[++i];
+                    break;
+                case "--feed":
+                    feedFiles = args[++i];
+                    break;
+                default:
+                    usage();
+            }
+        }
+
+        TrafficEngine engine;
+        ForkJoinPool pool = null;
+        List<Metrics> metrics = new ArrayList<>();
+        List<TripStats> trips = new ArrayList<>();
+        if (grid != null) {
+            String[] size = grid.split("x");
+            if (size.length != 2) {
+                usage();
+            }
+            pool = new ForkJoinPool(threads);
+            Grid city = new Grid(Integer.parseInt(size[0]), Integer.parseInt(size[1]), pool,
+                    new SeededRandom(seed), config, layout);
+            for (Simulation cell : city.cells) {
+                cell.maxVehicles = maxVehicles;
+                cell.controller = SignalController.create(controller, config);
+                if (metricsFile != null) {
+                    cell.metrics = new Metrics();
+                    metrics.add(cell.metrics);
+                }
+            }
+            if (tripsFile != null) {
+                city.trips = new TripStats();
+                trips.add(city.trips);
+            }
+            engine = city;
+        } else {
+            if (store.equals("parallel")) {
+                pool = new ForkJoinPool(threads);
+            }
+            engine = engine(store, maxVehicles, controller, config, layout, new SeededRandom(seed), pool);
+            if (metricsFile != null) {
+                if (!(engine instanceof Simulation)) {
+                    System.err.println("--metrics needs --store objects");
+                    System.exit(2);
+                }
+                Simulation sim = (Simulation) engine;
+                sim.metrics = new Metrics();
+                metrics.add(sim.metrics);
+            }
+            if (tripsFile != null) {
+                if (!(engine instanceof Simulation)) {
+                    System.err.println("--trips needs --store objects or events");
+                    System.exit(2);
+                }
+                Simulation sim = (Simulation) engine;
+                sim.trips = new TripStats();
+                trips.add(sim.trips);
+            }
+        }
+
+        if (kernel != null) {
+            if (!store.equals("parallel") || grid != null) {
+                System.err.println("--kernel needs --store parallel");
+                System.exit(2);
+            }
+            ((VehicleStore) engine).kernel = GapKernel.create(kernel);
+            System.err.println("kernel " + ((VehicleStore) engine).kernel.name());
+        }
+
+        TrajectoryRecorder recorder = null;
+        if (recordFile != null) {
+            if (!(engine instanceof Simulation) || engine instanceof EventSimulation) {
+                System.err.println("--record needs a single intersection with --store objects");
+                System.exit(2);
+            }
+            recorder = new TrajectoryRecorder(Paths.get(recordFile));
+        }
+
+        if ((checkpointFile != null || restoreFile != null)
+                && engine.getClass() != Simulation.class && engine.getClass() != VehicleStore.class) {
+            System.err.println("--checkpoint and --restore need a single intersection with --store objects or soa");
+            System.exit(2);
+        }
+
+        PrintWriter metricsOut = null;
+        boolean json = false;
+        if (metricsFile != null) {
+            metricsOut = new PrintWriter(new BufferedWriter(new FileWriter(metricsFile)));
+            json = metricsFile.endsWith(".json");
+            if (!json) {
+                Metrics.writeCsvHeader(metricsOut);
+            }
+        }
+
+        // Demand gets its own stream so enabling it does not shift the engine's draws.
+        TrafficDemand demand = null;
+        if (demandRates != null) {
+            demand = new TrafficDemand(engine, new SeededRandom(seed).split());
+            demand.parseRates(demandRates);
+            if (routes != null) {
+                demand.parseRoutes(routes);
+            }
+            if (profile != null) {
+                demand.parseProfile(profile, profilePeriod);
+            }
+        }
+
+        // Recorded arrivals, one reader thread per log; the colors they leave out
+        // come from a stream of their own, after demand's.
+        DetectorReplay replay = null;
+        if (feedFiles != null) {
+            SeededRandom streams = new SeededRandom(seed);
+            streams.split();
+            replay = new DetectorReplay(engine, streams.split());
+            for (String file : feedFiles.split(",")) {
+                replay.add(Paths.get(file));
+            }
+        }
+
+        // Continues the checkpointed run: its tick, vehicles, lights and random
+        // streams, under whatever controller, config and demand were given now.
+        long first = 0;
+        if (restoreFile != null) {
+            long restoreStart = System.nanoTime();
+            Checkpoint checkpoint = Checkpoint.read(Paths.get(restoreFile));
+            checkpoint.restore(engine, demand);
+            first = checkpoint.tick();
+            System.out.printf("restored tick=%d vehicles=%d bytes=%d in %.3fms%n", first, engine.vehicleCount(),
+                    checkpoint.bytes(), (System.nanoTime() - restoreStart) / 1e6);
+        }
+
+        if (replay != null) {
+            replay.prime(first);
+        }
+
+        TelemetryServer telemetry = null;
+        if (telemetryPort >= 0) {
+            telemetry = new TelemetryServer(telemetryPort);
+            System.err.printf("telemetry on http://localhost:%d/telemetry (NDJSON) and /events (SSE)%n",
+                    telemetry.port());
+        }
+
+        long trajectory = 0;
+        long allocStart = allocatedBytes();
+        long start = System.nanoTime();
+        if (engine instanceof EventSimulation) {
+            // Only ticks with an arrival or a metrics export are visited here; the
+            // engine jumps over the rest, so there is no per-tick trajectory.
+            EventSimulation events = (EventSimulation) engine;
+            long i = 0;
+            while (i < ticks) {
+                long next = ticks;
+                if (demand != null) {
+                    demand.inject(i);
+                    next = Math.min(next, demand.nextInjection(i + 1));
+                }
+                if (replay != null) {
+                    replay.inject(i);
+                    next = Math.min(next, replay.nextInjection(i + 1));
+                }
+                if (demand == null && replay == null && spawnEvery > 0) {
+                    if (i % spawnEvery == 0) {
+                        engine.addRandom();
+                    }
+                    next = Math.min(next, (i / spawnEvery + 1) * spawnEvery);
+                }
+                if (metricsEvery > 0) {
+                    next = Math.min(next, (i / metricsEvery + 1) * metricsEvery);
+                }
+                events.advanceTo(next);
+                i = next;
+                if (telemetry != null) {
+                    telemetry.tick(engine);
+                }
+                if (metricsOut != null && metricsEvery > 0 && i % metricsEvery == 0) {
+                    export(metrics, metricsOut, json, i);
+                }
+            }
+        } else {
+            for (long i = first; i < first + ticks; i++) {
+                if (demand != null) {
+                    demand.inject(i);
+                }
+                if (replay != null) {
+                    replay.inject(i);
+                }
+                if (demand == null && replay == null && spawnEvery > 0 && i % spawnEvery == 0) {
+                    engine.addRandom();
+                }
+                engine.update();
+                if (recorder != null) {
+                    recorder.record((Simulation) engine);
+                }
+                if (telemetry != null) {
+                    telemetry.tick(engine);
+                }
+                if (hash) {
+                    trajectory = TrafficEngine.hash(trajectory, engine.stateHash());
+                }
+                if (metricsOut != null && metricsEvery > 0 && (i + 1 - first) % metricsEvery == 0) {
+                    export(metrics, metricsOut, json, i + 1);
+                }
+            }
+        }
+        if (recorder != null) {
+            recorder.close();
+        }
+        if (telemetry != null) {
+            telemetry.close();
+        }
+        if (replay != null) {
+            replay.close();
+        }
+        long elapsed = System.nanoTime() - start;
+        long allocated = allocatedBytes() - allocStart;
+
+        if (checkpointFile != null) {
+            long checkpointStart = System.nanoTime();
+            Checkpoint checkpoint = Checkpoint.capture(engine, demand);
+            checkpoint.write(Paths.get(checkpointFile));
+            System.out.printf("checkpoint tick=%d vehicles=%d bytes=%d in %.3fms%n", checkpoint.tick(),
+                    engine.vehicleCount(), checkpoint.bytes(), (System.nanoTime() - checkpointStart) / 1e6);
+        }
+
+        double seconds = elapsed / 1e9;
+        System.out.printf("seed=%d ticks=%d elapsed=%.3fs ticks/s=%.0f spawned=%d despawned=%d alive=%d%n",
+                seed, ticks, seconds, ticks / seconds, engine.spawned(), engine.despawned(), engine.vehicleCount());
+        if (engine instanceof Grid) {
+            Grid city = (Grid) engine;
+            System.out.printf("grid handoffs=%d waiting=%d max-waiting=%d%n", city.handoffs, city.waiting(),
+                    city.maxWaiting);
+        }
+        if (demand != null) {
+            System.out.printf("demand generated=%d injected=%d dropped=%d backlog=%d max-backlog=%d%n",
+                    demand.generated, demand.injected, demand.dropped, demand.backlog(), demand.maxBacklog());
+        }
+        if (replay != null) {
+            long records = 0;
+            for (DetectorFeed feed : replay.feeds()) {
+                records += feed.records();
+                if (feed.failure() != null) {
+                    System.err.println("feed failed: " + feed.failure().getMessage());
+                }
+            }
+            System.out.printf("feed records=%d received=%d injected=%d late=%d backlog=%d max-backlog=%d%n",
+                    records, replay.received, replay.injected, replay.late, replay.backlog(), replay.maxBacklog());
+        }
+        if (recorder != null) {
+            System.out.printf("recorded frames=%d bytes=%d (%.1f/frame)%n", recorder.frames(), recorder.bytes(),
+                    (double) recorder.bytes() / Math.max(1, recorder.frames()));
+        }
+        if (engine instanceof EventSimulation) {
+            EventSimulation events = (EventSimulation) engine;
+            System.out.printf("events jumps=%d stepped-ticks=%d (%.2f%% of ticks)%n", events.jumps,
+                    events.steppedTicks, 100.0 * events.steppedTicks / Math.max(1, ticks));
+        }
+        if (hash) {
+            if (!(engine instanceof EventSimulation)) {
+                System.out.printf("trajectory=%016x%n", trajectory);
+            }
+            System.out.printf("state=%016x%n", engine.stateHash());
+        }
+
+        if (tripsFile != null) {
+            TripStats total = total(trips);
+            Histogram travel = total.travelTime();
+            Histogram stopped = total.stoppedTime();
+            System.out.printf("trips=%d travel p50=%d p90=%d p99=%d stopped p50=%d p90=%d p99=%d%n", total.trips(),
+                    travel.valueAtQuantile(0.5), travel.valueAtQuantile(0.9), travel.valueAtQuantile(0.99),
+                    stopped.valueAtQuantile(0.5), stopped.valueAtQuantile(0.9), stopped.valueAtQuantile(0.99));
+            StringBuilder od = new StringBuilder("od from\\to");
+            for (MovementDirection to : MovementDirection.values()) {
+                od.append(String.format(" %8s", to));
+            }
+            for (MovementDirection from : MovementDirection.values()) {
+                od.append(String.format("%n   %-8s", from));
+                for (MovementDirection to : MovementDirection.values()) {
+                    od.append(String.format(" %8d", total.trips(from, to)));
+                }
+            }
+            System.out.println(od);
+            try (PrintWriter out = new PrintWriter(new BufferedWriter(new FileWriter(tripsFile)))) {
+                if (tripsFile.endsWith(".json")) {
+                    total.writeJson(out, first + ticks);
+                } else {
+                    TripStats.writeCsvHeader(out);
+                    total.writeCsv(out, first + ticks);
+                }
+            }
+        }
+
+        if (metricsOut != null) {
+            if (metricsEvery <= 0 || ticks % metricsEvery != 0) {
+                export(metrics, metricsOut, json, first + ticks);
+            }
+            metricsOut.close();
+        }
+
+        if (reportAlloc) {
+            // Everything the run loop allocated on this thread, spawning, warm-up and
+            // exports included. VehicleStoreAllocationTest holds the steady-state tick to zero.
+            System.out.printf("allocated=%d bytes (%.1f/tick)%n", allocated, (double) allocated / ticks);
+        }
+
+        if (pool != null) {
+            pool.shutdown();
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package jraffic;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+// Log-linear histogram of non-negative longs in the spirit of HdrHistogram: every
+// power of two is split into 32 linear sub-buckets, so any recorded value is
+// reported within about 3%. Storage is fixed at construction.
+//
+// record() is meant for a single writer at a time and publishes with lazySet, so
+// it never locks or allocates. Any thread may read while it runs and sees counts
+// that are at most a few records behind.
+public class Histogram {
+
+    private static final int SUB_BITS = 5;
+    private static final int SUB_BUCKETS = 1 << SUB_BITS;
+    private static final int BUCKETS = (64 - SUB_BITS + 1) * SUB_BUCKETS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final AtomicLong total = new AtomicLong();
+    private final AtomicLong sum = new AtomicLong();
+    private final AtomicLong max = new AtomicLong();
+
+    static int index(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BITS;
+        return ((shift + 1) << SUB_BITS) + (int) ((value >>> shift) - SUB_BUCKETS);
+    }
+
+    static long lowestValue(int index) {
+        if (index < SUB_BUCKETS) {
+            return index;
+        }
+        int shift = (index >> SUB_BITS) - 1;
+        return ((long) (index & (SUB_BUCKETS - 1)) + SUB_BUCKETS) << shift;
+    }
+
+    static long highestValue(int index) {
+        return index + 1 < BUCKETS ? lowestValue(index + 1) - 1 : Long.MAX_VALUE;
+    }
+
+    public void record(long value) {
+        if (value < 0) {
+            value = 0;
+        }
+        int i = index(value);
+        counts.lazySet(i, counts.get(i) + 1);
+        total.lazySet(total.get() + 1);
+        sum.lazySet(sum.get() + value);
+        if (value > max.get()) {
+            max.lazySet(value);
+        }
+    }
+
+    public long count() {
+        return total.get();
+    }
+
+    public long max() {
+        return max.get();
+    }
+
+    public double mean() {
+        long n = total.get();
+        return n == 0 ? 0 : (double) sum.get() / n;
+    }
+
+    // Upper bound of the bucket holding the q-quantile, capped at the recorded max.
+    public long valueAtQuantile(double q) {
+        long n = total.get();
+        if (n == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(q * n));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts.get(i);
+            if (seen >= rank) {
+                return Math.min(highestValue(i), max.get());
+            }
+        }
+        return max.get();
+    }
+
+    // Starts over; like record(), only for the writer.
+    public void reset() {
+        for (int i = 0; i < BUCKETS; i++) {
+            if (counts.get(i) != 0) {
+                counts.lazySet(i, 0);
+            }
+        }
+        total.lazySet(0);
+        sum.lazySet(0);
+        max.lazySet(0);
+    }
+
+    // Folds this histogram into another, e.g. to aggregate per-intersection metrics.
+    public void addTo(Histogram target) {
+        for (int i = 0; i < BUCKETS; i++) {
+            long c = counts.get(i);
+            if (c != 0) {
+                target.counts.addAndGet(i, c);
+            }
+        }
+        target.total.addAndGet(total.get());
+        target.sum.addAndGet(sum.get());
+        target.max.accumulateAndGet(max.get(), Math::max);
+    }
+}
@@ -0,0 +1,593 @@
+package jraffic;
+
+import java.util.Arrays;
+
+// Continuous alternative to the engines that step 2 units per tick. Every
+// vehicle has a sub-unit position and a speed, and accelerates or brakes by the
+// Intelligent Driver Model towards its leader or a red stop line ahead, over a
+// timestep that need not be a whole tick. Since positions no longer land on
+// exact coordinates, stop lines and turn points act when a vehicle reaches or
+// crosses them rather than on equality.
+//
+// Vehicles live in parallel primitive arrays as in VehicleStore, with the
+// position kept as progress along the direction of travel plus the fixed
+// coordinate across it. A tick runs in three passes: a scalar walk over the
+// lanes finds each vehicle's obstacle, a branch-free loop over all slots
+// computes accelerations, speeds and advances from plain float arrays (the
+// loop C2 can vectorize), and a scalar pass applies the advances, turns and
+// counters. An advance never reaches past the obstacle's position at the start
+// of the tick, so lane order holds without re-sorting.
+public class KinematicStore implements TrafficEngine {
+
+    private static final int MAX_VEHICLES = 28;
+    private static final int MIN_SPAWN_DISTANCE = 80;
+    private static final int INITIAL_CAPACITY = 64;
+    // Gap standing in for an empty road ahead, far beyond any s* it is compared to.
+    private static final float FREE_ROAD = 1e6f;
+    private static final float MIN_GAP = 0.01f;
+
+    private static final MovementDirection[] DIRS = MovementDirection.values();
+
+    private static final int NORTH = MovementDirection.North.ordinal();
+    private static final int SOUTH = MovementDirection.South.ordinal();
+    private static final int WEST = MovementDirection.West.ordinal();
+
+    public final TrafficSystem.TrafficHub hub = new TrafficSystem.TrafficHub();
+    public final TrafficSystem.Counters counters;
+    public final SeededRandom random;
+    public final TrafficConfig config;
+    public final Layout layout;
+
+    // Driver model, in units and ticks. The desired speed is the 2 units per
+    // tick of the other engines; the jam distance and vehicle length come from
+    // config, so a standing queue keeps safeDistance between positions.
+    public float desiredSpeed = 2;
+    public float maxAccel = 0.1f;
+    public float comfortDecel = 0.15f;
+    // Hardest braking there is. A vehicle that could not stop within it when
+    // its light turned red drives through.
+    public float maxDecel = 1;
+    public float headway = 12;
+    // Ticks per update; the controller still decides once per whole tick.
+    public double timestep = 1;
+
+    public int size;
+    public float[] pos = new float[INITIAL_CAPACITY];
+    public float[] speed = new float[INITIAL_CAPACITY];
+    public int[] cross = new int[INITIAL_CAPACITY];
+    public byte[] dir = new byte[INITIAL_CAPACITY];
+    public byte[] startDir = new byte[INITIAL_CAPACITY];
+    public byte[] color = new byte[INITIAL_CAPACITY];
+    public boolean[] turned = new boolean[INITIAL_CAPACITY];
+    public boolean[] moving = new boolean[INITIAL_CAPACITY];
+    // Decided when the lane's light turns red: too close to stop, so it drives on.
+    public boolean[] running = new boolean[INITIAL_CAPACITY];
+
+    // Per slot, written by the lane walk and read by the batch loop: net gap to
+    // the obstacle, closing speed on it, and how far the vehicle may move
+    // before touching it. The batch loop leaves the advance for the commit pass.
+    private float[] gap = new float[INITIAL_CAPACITY];
+    private float[] closing = new float[INITIAL_CAPACITY];
+    private float[] room = new float[INITIAL_CAPACITY];
+    private float[] advance = new float[INITIAL_CAPACITY];
+
+    // Slots of each lane sorted by progress, as in LaneIndex.
+    private final int[][] lanes = new int[DIRS.length][INITIAL_CAPACITY];
+    private final int[] laneSizes = new int[DIRS.length];
+    // Whether each lane had green on the previous tick.
+    private final boolean[] green = new boolean[DIRS.length];
+
+    // Progress of each stop line, and of each turn point per direction * colors
+    // + color (MAX_VALUE when that route drives straight on) both before and
+    // after turning.
+    private final float[] stops = new float[DIRS.length];
+    private final float[] turns;
+    private final float[] merges;
+
+    public SignalController controller;
+    public int maxVehicles = MAX_VEHICLES;
+    public long tick;
+    public double time;
+    public long spawned;
+    public long despawned;
+
+    public KinematicStore() {
+        this(new SeededRandom(System.nanoTime()));
+    }
+
+    public KinematicStore(SeededRandom random) {
+        this(random, new TrafficConfig());
+    }
+
+    public KinematicStore(SeededRandom random, TrafficConfig config) {
+        this(random, config, Layout.DEFAULT);
+    }
+
+    public KinematicStore(SeededRandom random, TrafficConfig config, Layout layout) {
+        this.random = random;
+        this.config = config;
+        this.layout = layout;
+        this.counters = new TrafficSystem.Counters(layout);
+        this.controller = new AdaptiveController(config);
+        for (int d = 0; d < DIRS.length; d++) {
+            stops[d] = LaneIndex.progress(layout.stop[d], layout.stop[d], DIRS[d]);
+        }
+        turns = new float[layout.turnTo.length];
+        merges = new float[layout.turnTo.length];
+        int colors = turns.length / DIRS.length;
+        for (int k = 0; k < turns.length; k++) {
+            if (layout.turnTo[k] < 0) {
+                turns[k] = Float.MAX_VALUE;
+                continue;
+            }
+            turns[k] = LaneIndex.progress(layout.turnX[k], layout.turnY[k], DIRS[k / colors]);
+            merges[k] = LaneIndex.progress(layout.turnX[k], layout.turnY[k], DIRS[layout.turnTo[k]]);
+        }
+    }
+
+    @Override
+    public void update() {
+        advance(timestep);
+    }
+
+    // Moves every vehicle dt ticks on, running the controller once for each
+    // whole tick that starts inside that span.
+    public void advance(double dt) {
+
+        double end = time + dt;
+        while (tick < end) {
+            controller.update(hub, counters);
+            tick++;
+        }
+        time = end;
+
+        obstacles();
+        accelerate((float) dt);
+        commit();
+
+        int i = 0;
+        while (i < size) {
+            if (!layout.onMap(x(i), y(i))) {
+                remove(i);
+                despawned++;
+            } else {
+                i++;
+            }
+        }
+    }
+
+    // Front to back along every lane, the closest obstacle of: the leader's
+    // rear; a red stop line the vehicle has not reached and is not running;
+    // and, for a vehicle still short of its stop line that will turn, the first
+    // vehicle at or past its turn point in the lane it turns into, so it does
+    // not enter a box it cannot leave. Inside the box vehicles only follow
+    // their own lane: turn points there sit closer than the jam distance, and
+    // yielding across lanes would let them wait on each other in a circle.
+    private void obstacles() {
+        float length = config.vehicleLength;
+        float jam = jamDistance();
+        for (int lane = 0; lane < DIRS.length; lane++) {
+            int[] items = lanes[lane];
+            int n = laneSizes[lane];
+            boolean red = !TrafficSystem.green(hub, DIRS[lane]);
+            boolean turnedRed = red && green[lane];
+            green[lane] = !red;
+            float stop = stops[lane];
+            for (int k = n - 1; k >= 0; k--) {
+                int s = items[k];
+                float p = pos[s];
+                float v = speed[s];
+                float g = FREE_ROAD;
+                float r = FREE_ROAD;
+                float lead = v;
+                if (k + 1 < n) {
+                    int l = items[k + 1];
+                    r = pos[l] - p - length;
+                    g = r;
+                    lead = speed[l];
+                }
+                if (turnedRed) {
+                    running[s] = p <= stop && v * v > 2 * maxDecel * (stop - p);
+                }
+                if (red && !turned[s] && p <= stop && !running[s]) {
+                    float toLine = stop - p;
+                    r = Math.min(r, toLine);
+                    if (toLine + jam < g) {
+                        g = toLine + jam;
+                        lead = 0;
+                    }
+                }
+                int route = lane * Vehicle.COLOR_NAMES.length + color[s];
+                if (!turned[s] && p <= stop && turns[route] != Float.MAX_VALUE) {
+                    int into = layout.turnTo[route];
+                    int at = lowerBound(into, merges[route]);
+                    if (at < laneSizes[into]) {
+                        int l = lanes[into][at];
+                        float m = turns[route] - p + pos[l] - merges[route] - length;
+                        r = Math.min(r, m);
+                        if (m < g) {
+                            g = m;
+                            lead = speed[l];
+                        }
+                    }
+                }
+                gap[s] = g;
+                closing[s] = v - lead;
+                room[s] = Math.max(0, r);
+            }
+        }
+    }
+
+    // The Intelligent Driver Model over every slot at once. Plain arithmetic
+    // over float arrays, min and max without branches, so the JIT can turn it
+    // into vector instructions. The advance is the trapezoid of the two speeds,
+    // cut short where it would reach the obstacle, and then the speed is cut to
+    // what that shorter advance allows, so a vehicle arrives at its obstacle
+    // standing.
+    private void accelerate(float dt) {
+        float jam = jamDistance();
+        float a = maxAccel;
+        float brake = -maxDecel;
+        float t = headway;
+        float invSpeed = 1 / desiredSpeed;
+        float invTwoRoot = 1 / (2 * (float) Math.sqrt(maxAccel * comfortDecel));
+        float invDt = 1 / dt;
+        float[] v = speed;
+        float[] s = gap;
+        float[] dv = closing;
+        float[] r = room;
+        float[] out = advance;
+        int n = size;
+        for (int i = 0; i < n; i++) {
+            float vi = v[i];
+            float ratio = vi * invSpeed;
+            float ratio2 = ratio * ratio;
+            float desired = jam + Math.max(0f, vi * t + vi * dv[i] * invTwoRoot);
+            float q = desired / Math.max(s[i], MIN_GAP);
+            float acc = Math.max(brake, a * (1 - ratio2 * ratio2 - q * q));
+            float next = Math.max(0f, vi + acc * dt);
+            float step = Math.min(r[i], (vi + next) * 0.5f * dt);
+            v[i] = Math.max(0f, Math.min(next, 2 * step * invDt - vi));
+            out[i] = step;
+        }
+    }
+
+    // Turns wait until every vehicle has moved: a turning vehicle joins its new
+    // lane among positions that are all final, so the lane stays sorted.
+    private void commit() {
+        for (int i = 0; i < size; i++) {
+            moving[i] = advance[i] > 0;
+            if (moving[i]) {
+                track(i, -1);
+                pos[i] += advance[i];
+            }
+        }
+        for (int i = 0; i < size; i++) {
+            if (moving[i]) {
+                if (!turned[i]) {
+                    turnCheck(i);
+                }
+                track(i, 1);
+            }
+        }
+    }
+
+    private float jamDistance() {
+        return config.safeDistance - config.vehicleLength;
+    }
+
+    // Rounded position, for the layout's integer checks.
+    public int x(int slot) {
+        int d = dir[slot];
+        if (d == NORTH || d == SOUTH) {
+            return cross[slot];
+        }
+        return Math.round(d == WEST ? -pos[slot] : pos[slot]);
+    }
+
+    public int y(int slot) {
+        int d = dir[slot];
+        if (d == NORTH) {
+            return Math.round(pos[slot]);
+        } else if (d == SOUTH) {
+            return Math.round(-pos[slot]);
+        }
+        return cross[slot];
+    }
+
+    private void track(int slot, int delta) {
+        counters.track(DIRS[startDir[slot]], turned[slot], x(slot), y(slot), delta);
+    }
+
+    private static boolean vertical(int lane) {
+        return lane == NORTH || lane == SOUTH;
+    }
+
+    // Turns once the vehicle reaches its route's turn point, carrying whatever
+    // it drove past the point into the new direction.
+    private void turnCheck(int slot) {
+        int d = dir[slot];
+        int k = d * Vehicle.COLOR_NAMES.length + color[slot];
+        if (pos[slot] < turns[k]) {
+            return;
+        }
+        float over = pos[slot] - turns[k];
+        laneRemoveAt(d, indexOf(slot, d));
+        int next = layout.turnTo[k];
+        dir[slot] = (byte) next;
+        turned[slot] = true;
+        pos[slot] = LaneIndex.progress(layout.turnX[k], layout.turnY[k], DIRS[next]) + over;
+        cross[slot] = vertical(next) ? layout.turnX[k] : layout.turnY[k];
+        laneAdd(slot);
+    }
+
+    private void remove(int slot) {
+        track(slot, -1);
+        int lane = dir[slot];
+        laneRemoveAt(lane, indexOf(slot, lane));
+
+        int last = size - 1;
+        if (slot != last) {
+            int lastLane = dir[last];
+            lanes[lastLane][indexOf(last, lastLane)] = slot;
+            pos[slot] = pos[last];
+            speed[slot] = speed[last];
+            cross[slot] = cross[last];
+            dir[slot] = dir[last];
+            startDir[slot] = startDir[last];
+            color[slot] = color[last];
+            turned[slot] = turned[last];
+            moving[slot] = moving[last];
+            running[slot] = running[last];
+        }
+        size = last;
+    }
+
+    public boolean canSpawnVehicle(int spawnX, int spawnY, MovementDirection spawnDir) {
+
+        if (size >= maxVehicles) {
+            return false;
+        }
+
+        return spawnPointClear(spawnX, spawnY, spawnDir);
+    }
+
+    private boolean spawnPointClear(int spawnX, int spawnY, MovementDirection spawnDir) {
+
+        int lane = spawnDir.ordinal();
+        float limit = LaneIndex.progress(spawnX, spawnY, spawnDir) + MIN_SPAWN_DISTANCE;
+        for (int i = 0; i < laneSizes[lane] && pos[lanes[lane][i]] < limit; i++) {
+            int s = lanes[lane][i];
+            if (startDir[s] == lane
+                    && Math.abs(spawnX - x(s)) < MIN_SPAWN_DISTANCE
+                    && Math.abs(spawnY - y(s)) < MIN_SPAWN_DISTANCE) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public void clear() {
+        size = 0;
+        Arrays.fill(laneSizes, 0);
+        Arrays.fill(green, false);
+        counters.clear();
+        hub.reset();
+        tick = 0;
+        time = 0;
+        spawned = 0;
+        despawned = 0;
+    }
+
+    // Enters at the desired speed, as if arriving from the road beyond the map.
+    public void add(int vx, int vy, MovementDirection vdir, int vcolor) {
+        if (size == pos.length) {
+            grow();
+        }
+        int slot = size++;
+        int d = vdir.ordinal();
+        pos[slot] = LaneIndex.progress(vx, vy, vdir);
+        speed[slot] = desiredSpeed;
+        cross[slot] = vertical(d) ? vx : vy;
+        dir[slot] = (byte) d;
+        startDir[slot] = (byte) d;
+        color[slot] = (byte) vcolor;
+        turned[slot] = false;
+        moving[slot] = false;
+        running[slot] = false;
+        laneAdd(slot);
+        track(slot, 1);
+        spawned++;
+    }
+
+    public void addVehicleAt(int vx, int vy, MovementDirection vdir) {
+        if (canSpawnVehicle(vx, vy, vdir)) {
+            add(vx, vy, vdir, Vehicle.randColor(random));
+        }
+    }
+
+    public void addVehicleAt(MovementDirection vdir) {
+        addVehicleAt(layout.spawnX[vdir.ordinal()], layout.spawnY[vdir.ordinal()], vdir);
+    }
+
+    public void addSouth() {
+        addVehicleAt(MovementDirection.South);
+    }
+
+    public void addNorth() {
+        addVehicleAt(MovementDirection.North);
+    }
+
+    public void addWest() {
+        addVehicleAt(MovementDirection.East);
+    }
+
+    public void addEast() {
+        addVehicleAt(MovementDirection.West);
+    }
+
+    @Override
+    public int entryCount() {
+        return DIRS.length;
+    }
+
+    @Override
+    public MovementDirection entryDirection(int entry) {
+        return DIRS[entry];
+    }
+
+    @Override
+    public boolean spawn(int entry, int vcolor) {
+        MovementDirection vdir = DIRS[entry];
+        int vx = layout.spawnX[entry];
+        int vy = layout.spawnY[entry];
+        if (!spawnPointClear(vx, vy, vdir)) {
+            return false;
+        }
+        add(vx, vy, vdir, vcolor);
+        return true;
+    }
+
+    @Override
+    public void addRandom() {
+
+        int rand = random.nextInt(4);
+
+        switch (rand) {
+            case 0:
+                addSouth();
+                break;
+            case 1:
+                addNorth();
+                break;
+            case 2:
+                addWest();
+                break;
+            case 3:
+                addEast();
+                break;
+        }
+
+    }
+
+    @Override
+    public int vehicleCount() {
+        return size;
+    }
+
+    @Override
+    public long spawned() {
+        return spawned;
+    }
+
+    @Override
+    public long despawned() {
+        return despawned;
+    }
+
+    @Override
+    public long tick() {
+        return tick;
+    }
+
+    @Override
+    public TrafficSystem.TrafficHub hub() {
+        return hub;
+    }
+
+    @Override
+    public TrafficSystem.Counters counters() {
+        return counters;
+    }
+
+    @Override
+    public long stateHash() {
+        long h = hub.hash();
+        for (int i = 0; i < size; i++) {
+            h = TrafficEngine.hash(h, Float.floatToIntBits(pos[i]));
+            h = TrafficEngine.hash(h, Float.floatToIntBits(speed[i]));
+            h = TrafficEngine.hash(h, cross[i]);
+            h = TrafficEngine.hash(h, Vehicle.hash(DIRS[dir[i]], DIRS[startDir[i]], color[i], turned[i], moving[i]));
+        }
+        return h;
+    }
+
+    private void grow() {
+        int capacity = pos.length * 2;
+        pos = Arrays.copyOf(pos, capacity);
+        speed = Arrays.copyOf(speed, capacity);
+        cross = Arrays.copyOf(cross, capacity);
+        dir = Arrays.copyOf(dir, capacity);
+        startDir = Arrays.copyOf(startDir, capacity);
+        color = Arrays.copyOf(color, capacity);
+        turned = Arrays.copyOf(turned, capacity);
+        moving = Arrays.copyOf(moving, capacity);
+        running = Arrays.copyOf(running, capacity);
+        gap = new float[capacity];
+        closing = new float[capacity];
+        room = new float[capacity];
+        advance = new float[capacity];
+    }
+
+    private void laneAdd(int slot) {
+        int lane = dir[slot];
+        int[] items = lanes[lane];
+        int laneSize = laneSizes[lane];
+        if (laneSize == items.length) {
+            items = Arrays.copyOf(items, laneSize * 2);
+            lanes[lane] = items;
+        }
+        int at = upperBound(lane, pos[slot]);
+        System.arraycopy(items, at, items, at + 1, laneSize - at);
+        items[at] = slot;
+        laneSizes[lane] = laneSize + 1;
+    }
+
+    private void laneRemoveAt(int lane, int at) {
+        int[] items = lanes[lane];
+        int laneSize = laneSizes[lane] - 1;
+        System.arraycopy(items, at + 1, items, at, laneSize - at);
+        laneSizes[lane] = laneSize;
+    }
+
+    private int indexOf(int slot, int lane) {
+        int[] items = lanes[lane];
+        int laneSize = laneSizes[lane];
+        for (int i = lowerBound(lane, pos[slot]); i < laneSize; i++) {
+            if (items[i] == slot) {
+                return i;
+            }
+        }
+        throw new IllegalStateException("Slot " + slot + " is not indexed in lane " + DIRS[lane]);
+    }
+
+    private int lowerBound(int lane, float p) {
+        int[] items = lanes[lane];
+        int lo = 0;
+        int hi = laneSizes[lane];
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (pos[items[mid]] < p) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    private int upperBound(int lane, float p) {
+        int[] items = lanes[lane];
+        int lo = 0;
+        int hi = laneSizes[lane];
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (pos[items[mid]] <= p) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+}
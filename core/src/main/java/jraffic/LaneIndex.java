@@ -0,0 +1,173 @@
+package jraffic;
+
+import java.util.Arrays;
+
+// Vehicles of each MovementDirection share a single lane. Each lane keeps its
+// vehicles sorted by progress along the direction of travel, so the leader of
+// a vehicle is its successor in the lane and never needs a full scan.
+public class LaneIndex {
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    private final Vehicle[][] lanes = new Vehicle[MovementDirection.values().length][];
+    private final int[] sizes = new int[lanes.length];
+    private final int safeDistance;
+    private final Layout layout;
+
+    public LaneIndex() {
+        this(Vehicle.SAFE_DISTANCE);
+    }
+
+    public LaneIndex(int safeDistance) {
+        this(safeDistance, Layout.DEFAULT);
+    }
+
+    public LaneIndex(int safeDistance, Layout layout) {
+        this.safeDistance = safeDistance;
+        this.layout = layout;
+        for (int i = 0; i < lanes.length; i++) {
+            lanes[i] = new Vehicle[INITIAL_CAPACITY];
+        }
+    }
+
+    public static int progress(Vehicle v) {
+        return progress(v, v.dir);
+    }
+
+    private static int progress(Vehicle v, MovementDirection dir) {
+        return progress(v.x, v.y, dir);
+    }
+
+    public static int progress(int x, int y, MovementDirection dir) {
+        switch (dir) {
+            case North:
+                return y;
+            case South:
+                return -y;
+            case West:
+                return -x;
+            default:
+                return x;
+        }
+    }
+
+    public int size(MovementDirection dir) {
+        return sizes[dir.ordinal()];
+    }
+
+    public Vehicle get(MovementDirection dir, int i) {
+        return lanes[dir.ordinal()][i];
+    }
+
+    public void clear() {
+        for (int i = 0; i < lanes.length; i++) {
+            Arrays.fill(lanes[i], 0, sizes[i], null);
+            sizes[i] = 0;
+        }
+    }
+
+    public void add(Vehicle v) {
+        int lane = v.dir.ordinal();
+        Vehicle[] items = lanes[lane];
+        int size = sizes[lane];
+        if (size == items.length) {
+            items = Arrays.copyOf(items, size * 2);
+            lanes[lane] = items;
+        }
+        int at = upperBound(items, size, v.dir, progress(v));
+        System.arraycopy(items, at, items, at + 1, size - at);
+        items[at] = v;
+        sizes[lane] = size + 1;
+    }
+
+    public void remove(Vehicle v) {
+        removeAt(v.dir.ordinal(), indexOf(v, v.dir, progress(v)));
+    }
+
+    private void removeAt(int lane, int at) {
+        Vehicle[] items = lanes[lane];
+        int size = sizes[lane] - 1;
+        System.arraycopy(items, at + 1, items, at, size - at);
+        items[size] = null;
+        sizes[lane] = size;
+    }
+
+    public Vehicle leader(Vehicle v) {
+        int lane = v.dir.ordinal();
+        int at = upperBound(lanes[lane], sizes[lane], v.dir, progress(v));
+        return at < sizes[lane] ? lanes[lane][at] : null;
+    }
+
+    public boolean blocked(Vehicle v) {
+        Vehicle leader = leader(v);
+        return leader != null && progress(leader) - progress(v) <= safeDistance;
+    }
+
+    public void step(Vehicle v) {
+        int lane = v.dir.ordinal();
+        Vehicle[] items = lanes[lane];
+        int size = sizes[lane];
+        int at = indexOf(v, v.dir, progress(v));
+
+        v.step();
+
+        // Only a vehicle sharing our exact spot can be overtaken by a single step.
+        int p = progress(v);
+        while (at + 1 < size && progress(items[at + 1]) < p) {
+            items[at] = items[at + 1];
+            items[at + 1] = v;
+            at++;
+        }
+    }
+
+    public void turnCheck(Vehicle v) {
+        MovementDirection before = v.dir;
+        int p = progress(v);
+
+        v.turnCheck(layout);
+
+        if (v.dir != before) {
+            removeAt(before.ordinal(), indexOf(v, before, p));
+            add(v);
+        }
+    }
+
+    private int indexOf(Vehicle v, MovementDirection dir, int p) {
+        Vehicle[] items = lanes[dir.ordinal()];
+        int size = sizes[dir.ordinal()];
+        for (int i = lowerBound(items, size, dir, p); i < size; i++) {
+            if (items[i] == v) {
+                return i;
+            }
+        }
+        throw new IllegalStateException("Vehicle is not indexed in lane " + dir);
+    }
+
+    private static int lowerBound(Vehicle[] items, int size, MovementDirection dir, int p) {
+        int lo = 0;
+        int hi = size;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (progress(items[mid], dir) < p) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    private static int upperBound(Vehicle[] items, int size, MovementDirection dir, int p) {
+        int lo = 0;
+        int hi = size;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (progress(items[mid], dir) <= p) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+}
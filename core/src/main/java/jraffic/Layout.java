@@ -0,0 +1,191 @@
+package jraffic;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Properties;
+
+// Geometry of one intersection, read from a layout file: where each approach
+// spawns, stops and queues, the box vehicles cross in, the map they despawn
+// outside of, and the turn each route takes. Everything is unpacked into
+// tables indexed by direction of travel, and turns by direction * colors +
+// color, so the per-tick checks are array lookups. Approaches are named by the
+// direction they drive: north runs towards +y, east towards +x.
+public class Layout {
+
+    private static final MovementDirection[] DIRS = MovementDirection.values();
+    private static final int COLORS = Vehicle.COLOR_NAMES.length;
+
+    public static final String DEFAULT_RESOURCE = "four-way.layout";
+    public static final Layout DEFAULT = resource(DEFAULT_RESOURCE);
+
+    public final String name;
+
+    // Per direction of travel. Stop lines and queues are coordinates on the axis
+    // the direction drives along: y for North and South, x for East and West.
+    public final int[] spawnX = new int[DIRS.length];
+    public final int[] spawnY = new int[DIRS.length];
+    public final int[] stop = new int[DIRS.length];
+    public final int[] queueFrom = new int[DIRS.length];
+    public final int[] queueTo = new int[DIRS.length];
+    public final int[] laneLength = new int[DIRS.length];
+
+    // Intersection box and map, inclusive.
+    public int boxLeft, boxTop, boxRight, boxBottom;
+    public int mapLeft, mapTop, mapRight, mapBottom;
+
+    // Per direction * COLORS + color: where that route turns and the direction
+    // ordinal it leaves in, -1 when it drives straight on.
+    public final int[] turnX = new int[DIRS.length * COLORS];
+    public final int[] turnY = new int[DIRS.length * COLORS];
+    public final int[] turnTo = new int[DIRS.length * COLORS];
+
+    private Layout(String name, Properties p) {
+        this.name = name;
+        int[] map = ints(p, "map", 4);
+        mapLeft = map[0];
+        mapTop = map[1];
+        mapRight = map[2];
+        mapBottom = map[3];
+        int[] box = ints(p, "box", 4);
+        boxLeft = box[0];
+        boxTop = box[1];
+        boxRight = box[2];
+        boxBottom = box[3];
+        Arrays.fill(turnTo, -1);
+        for (MovementDirection dir : DIRS) {
+            int d = dir.ordinal();
+            String approach = key(dir);
+            int[] spawn = ints(p, approach + ".spawn", 2);
+            spawnX[d] = spawn[0];
+            spawnY[d] = spawn[1];
+            stop[d] = ints(p, approach + ".stop", 1)[0];
+            int[] queue = ints(p, approach + ".queue", 2);
+            queueFrom[d] = Math.min(queue[0], queue[1]);
+            queueTo[d] = Math.max(queue[0], queue[1]);
+            laneLength[d] = ints(p, approach + ".length", 1)[0];
+            for (int c = 0; c < COLORS; c++) {
+                String turnKey = "turn." + approach + "." + Vehicle.COLOR_NAMES[c].toLowerCase();
+                String value = p.getProperty(turnKey);
+                if (value == null) {
+                    continue;
+                }
+                String[] parts = value.trim().split("\\s+");
+                if (parts.length != 3) {
+                    throw new IllegalArgumentException(name + ": " + turnKey + " needs x y direction: " + value);
+                }
+                int k = d * COLORS + c;
+                turnX[k] = number(name, turnKey, parts[0]);
+                turnY[k] = number(name, turnKey, parts[1]);
+                turnTo[k] = direction(name, turnKey, parts[2]).ordinal();
+            }
+        }
+    }
+
+    public static Layout load(Path path) throws IOException {
+        try (Reader in = Files.newBufferedReader(path)) {
+            Properties p = new Properties();
+            p.load(in);
+            return new Layout(path.toString(), p);
+        }
+    }
+
+    public static Layout resource(String name) {
+        try (InputStream in = Layout.class.getResourceAsStream(name)) {
+            if (in == null) {
+                throw new IllegalStateException("Missing layout resource " + name);
+            }
+            Properties p = new Properties();
+            p.load(in);
+            return new Layout(name, p);
+        } catch (IOException e) {
+            throw new IllegalStateException("Failed to read layout resource " + name, e);
+        }
+    }
+
+    // A file path, or the name of a layout shipped next to this class.
+    public static Layout named(String spec) throws IOException {
+        Path path = Path.of(spec);
+        if (Files.exists(path)) {
+            return load(path);
+        }
+        return resource(spec.endsWith(".layout") ? spec : spec + ".layout");
+    }
+
+    public static int axis(MovementDirection dir, int x, int y) {
+        return dir == MovementDirection.North || dir == MovementDirection.South ? y : x;
+    }
+
+    public boolean inIntersection(int x, int y) {
+        return x >= boxLeft && x <= boxRight && y >= boxTop && y <= boxBottom;
+    }
+
+    public boolean onMap(int x, int y) {
+        return x >= mapLeft && x <= mapRight && y >= mapTop && y <= mapBottom;
+    }
+
+    public int queueOf(MovementDirection startDir, boolean turned, int x, int y) {
+        if (turned) {
+            return -1;
+        }
+        int d = startDir.ordinal();
+        int a = axis(startDir, x, y);
+        return a >= queueFrom[d] && a <= queueTo[d] ? d : -1;
+    }
+
+    public boolean atStopLine(MovementDirection dir, int x, int y) {
+        return axis(dir, x, y) == stop[dir.ordinal()];
+    }
+
+    // The direction ordinal a vehicle of this color leaves in when it stands on
+    // its turn point, or -1.
+    public int turn(int dir, int color, int x, int y) {
+        int k = dir * COLORS + color;
+        return turnTo[k] >= 0 && x == turnX[k] && y == turnY[k] ? turnTo[k] : -1;
+    }
+
+    private static String key(MovementDirection dir) {
+        return dir.name().toLowerCase();
+    }
+
+    private int[] ints(Properties p, String key, int count) {
+        String value = p.getProperty(key);
+        if (value == null) {
+            throw new IllegalArgumentException(name + ": missing " + key);
+        }
+        String[] parts = value.trim().split("\\s+");
+        if (parts.length != count) {
+            throw new IllegalArgumentException(name + ": " + key + " needs " + count + " numbers: " + value);
+        }
+        int[] values = new int[count];
+        for (int i = 0; i < count; i++) {
+            values[i] = number(name, key, parts[i]);
+        }
+        return values;
+    }
+
+    private static int number(String name, String key, String value) {
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(name + ": " + key + " has a bad number: " + value);
+        }
+    }
+
+    private static MovementDirection direction(String name, String key, String value) {
+        for (MovementDirection dir : DIRS) {
+            if (dir.name().equalsIgnoreCase(value)) {
+                return dir;
+            }
+        }
+        throw new IllegalArgumentException(name + ": " + key + " has an unknown direction: " + value);
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+}
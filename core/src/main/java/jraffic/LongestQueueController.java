@@ -0,0 +1,85 @@
+package jraffic;
+
+// Longest queue first: a phase keeps green until its queue is empty, or for at
+// most maxGreen ticks, and then the longest waiting queue is served next.
+public class LongestQueueController implements SignalController {
+
+    public static final int MIN_GREEN = 60;
+    public static final int MAX_GREEN = 600;
+
+    private final int minGreen;
+    private final int maxGreen;
+    private final TrafficConfig config;
+
+    public LongestQueueController(int minGreen, int maxGreen) {
+        this(minGreen, maxGreen, new TrafficConfig());
+    }
+
+    public LongestQueueController(int minGreen, int maxGreen, TrafficConfig config) {
+        this.minGreen = minGreen;
+        this.maxGreen = maxGreen;
+        this.config = config;
+    }
+
+    @Override
+    public void update(TrafficSystem.TrafficHub hub, TrafficSystem.Counters counters) {
+        boolean clear = counters.inIntersection == 0;
+        hub.phaseDuration = maxGreen;
+        hub.timer = Math.min(hub.timer + 1, maxGreen);
+        boolean empty = TrafficSystem.servedQueue(counters, hub.phase) == 0;
+        if (hub.pendingPhase == null && hub.timer >= minGreen && (empty || hub.timer >= maxGreen)) {
+            MovementDirection best = longest(hub, counters);
+            if (best != hub.phase) {
+                hub.timer = 0;
+                TrafficSystem.requestPhase(hub, best, clear);
+            }
+        }
+        TrafficSystem.settle(config, hub, clear);
+    }
+
+    // Scans in rotation order after the current phase, so ties go round fairly.
+    private MovementDirection longest(TrafficSystem.TrafficHub hub, TrafficSystem.Counters counters) {
+        MovementDirection best = hub.phase;
+        int longest = 0;
+        MovementDirection phase = hub.phase;
+        for (int i = 0; i < 4; i++) {
+            phase = TrafficSystem.nextPhase(phase);
+            int queue = TrafficSystem.servedQueue(counters, phase);
+            if (queue > longest) {
+                longest = queue;
+                best = phase;
+            }
+        }
+        return best;
+    }
+
+    // Until the phase may end; a phase that would be chosen again holds for good.
+    @Override
+    public long quietTicks(TrafficSystem.TrafficHub hub, TrafficSystem.Counters counters) {
+        long quiet = TrafficSystem.settleQuietTicks(config, hub);
+        if (hub.pendingPhase == null) {
+            int end = TrafficSystem.servedQueue(counters, hub.phase) == 0 ? minGreen : Math.max(minGreen, maxGreen);
+            if (end > maxGreen) {
+                return quiet;
+            }
+            if (hub.timer + 1 < end) {
+                quiet = Math.min(quiet, end - hub.timer - 1);
+            } else if (longest(hub, counters) != hub.phase) {
+                quiet = 0;
+            }
+        }
+        return quiet;
+    }
+
+    @Override
+    public void skip(TrafficSystem.TrafficHub hub, TrafficSystem.Counters counters, long ticks) {
+        hub.phaseDuration = maxGreen;
+        hub.timer = (int) Math.min(hub.timer + ticks, maxGreen);
+        TrafficSystem.skipSettle(hub, ticks);
+    }
+
+    @Override
+    public String name() {
+        return "lqf";
+    }
+}
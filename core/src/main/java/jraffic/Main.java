@@ -0,0 +1,291 @@
+package jraffic;
+
+import javax.swing.*;
+import java.awt.*;
+import java.awt.event.*;
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Consumer;
+
+public class Main extends JPanel implements ActionListener {
+
+    private static final long FRAME_STATS_NANOS = 1_000_000_000L;
+    private static final int PAN_PIXELS = 100;
+    // When main started, for the startup times reported on stderr.
+    private static long launched = System.nanoTime();
+
+    private final SimulationLoop loop;
+    private final boolean replaying;
+    // Copies of the two newest ticks seen by the EDT; drawing blends between them.
+    private final Snapshot previous = new Snapshot();
+    private final Snapshot frame = new Snapshot();
+    private final Viewport view = new Viewport(Renderer.WIDTH, Renderer.HEIGHT);
+    private boolean interpolate = true;
+    private Timer timer;
+    private final SpriteCache sprites;
+    private final Renderer renderer;
+    private boolean painted;
+    private boolean spritesReported;
+    // Paint times since the label was last rebuilt, which happens once a second.
+    private final Histogram frameNanos = new Histogram();
+    private long statsSince = System.nanoTime();
+    private double labelSpeed;
+    private double labelScale;
+    private String label = "";
+    private Point dragFrom;
+
+    public Main(SimulationLoop loop, TrafficEngine engine, boolean replaying, SpriteCache sprites) {
+
+        this.loop = loop;
+        this.replaying = replaying;
+        this.sprites = sprites;
+        this.renderer = new Renderer(sprites);
+        frame.capture(engine);
+        previous.copyFrom(frame);
+        renderer.prepare(frame, previous);
+        if (frame.rows * frame.cols > 1) {
+            view.fit(frame.cols * Snapshot.CELL_WIDTH, frame.rows * Snapshot.CELL_HEIGHT);
+        }
+
+        setPreferredSize(new Dimension(Renderer.WIDTH, Renderer.HEIGHT));
+        setFocusable(true);
+
+        addKeyListener(new KeyAdapter() {
+
+            @Override
+            public void keyPressed(KeyEvent e) {
+                switch (e.getKeyCode()) {
+                    case KeyEvent.VK_UP:
+                        spawn(Simulation::addSouth);
+                        break;
+                    case KeyEvent.VK_DOWN:
+                        spawn(Simulation::addNorth);
+                        break;
+                    case KeyEvent.VK_LEFT:
+                        spawn(Simulation::addWest);
+                        break;
+                    case KeyEvent.VK_RIGHT:
+                        spawn(Simulation::addEast);
+                        break;
+                    case KeyEvent.VK_R:
+                        loop.submit(TrafficEngine::addRandom);
+                        break;
+                    case KeyEvent.VK_EQUALS:
+                    case KeyEvent.VK_PLUS:
+                        loop.setSpeed(Math.min(64, loop.speed() * 2));
+                        break;
+                    case KeyEvent.VK_MINUS:
+                        loop.setSpeed(Math.max(0.125, loop.speed() / 2));
+                        break;
+                    case KeyEvent.VK_I:
+                        interpolate = !interpolate;
+                        break;
+                    case KeyEvent.VK_W:
+                        view.pan(0, PAN_PIXELS);
+                        break;
+                    case KeyEvent.VK_S:
+                        view.pan(0, -PAN_PIXELS);
+                        break;
+                    case KeyEvent.VK_A:
+                        view.pan(PAN_PIXELS, 0);
+                        break;
+                    case KeyEvent.VK_D:
+                        view.pan(-PAN_PIXELS, 0);
+                        break;
+                    case KeyEvent.VK_F:
+                        view.fit(frame.cols * Snapshot.CELL_WIDTH, frame.rows * Snapshot.CELL_HEIGHT);
+                        break;
+                    case KeyEvent.VK_0:
+                        view.zoomAt(view.width / 2, view.height / 2, 1 / view.scale);
+                        break;
+                    case KeyEvent.VK_ESCAPE:
+                        System.exit(0);
+                        break;
+                }
+            }
+        });
+
+        MouseAdapter mouse = new MouseAdapter() {
+
+            @Override
+            public void mousePressed(MouseEvent e) {
+                dragFrom = e.getPoint();
+            }
+
+            @Override
+            public void mouseDragged(MouseEvent e) {
+                view.pan(e.getX() - dragFrom.x, e.getY() - dragFrom.y);
+                dragFrom = e.getPoint();
+            }
+
+            @Override
+            public void mouseWheelMoved(MouseWheelEvent e) {
+                view.zoomAt(e.getX(), e.getY(), Math.pow(1.25, -e.getPreciseWheelRotation()));
+            }
+        };
+        addMouseListener(mouse);
+        addMouseMotionListener(mouse);
+        addMouseWheelListener(mouse);
+
+        // The timer only paints; the simulation ticks on its own thread.
+        timer = new Timer(16, this);
+        timer.start();
+        loop.start();
+    }
+
+    // The arrow keys spawn at a single intersection only.
+    private void spawn(Consumer<Simulation> action) {
+        loop.submit(engine -> {
+            if (engine instanceof Simulation) {
+                action.accept((Simulation) engine);
+            }
+        });
+    }
+
+    @Override
+    public void actionPerformed(ActionEvent e) {
+        Snapshot latest = loop.snapshots.latest();
+        if (latest.tick != frame.tick || latest.nanos != frame.nanos) {
+            previous.copyFrom(frame);
+            frame.copyFrom(latest);
+            renderer.prepare(frame, previous);
+        }
+        if (!spritesReported && sprites.ready()) {
+            spritesReported = true;
+            System.err.printf("sprites ready %.1f ms after launch (atlas decoded and scaled in %.1f ms)%n",
+                    (System.nanoTime() - launched) / 1e6, sprites.loadNanos() / 1e6);
+        }
+        repaint();
+    }
+
+    // How far to blend from the previous tick towards the newest one, so motion
+    // stays smooth when ticks and frames do not line up.
+    private double alpha() {
+        long span = frame.nanos - previous.nanos;
+        if (!interpolate || span <= 0) {
+            return 1;
+        }
+        return Math.min(1, (double) (System.nanoTime() - frame.nanos) / span);
+    }
+
+    @Override
+    protected void paintComponent(Graphics g) {
+        super.paintComponent(g);
+        long start = System.nanoTime();
+        view.width = getWidth();
+        view.height = getHeight();
+        renderer.draw((Graphics2D) g, view, alpha(), label());
+        long end = System.nanoTime();
+        frameNanos.record(end - start);
+        if (!painted) {
+            painted = true;
+            System.err.printf("first frame %.1f ms after launch, JVM up %d ms, sprites %s%n", (end - launched) / 1e6,
+                    java.lang.management.ManagementFactory.getRuntimeMXBean().getUptime(),
+                    sprites.ready() ? "drawn" : "still loading, vehicles as rectangles");
+        }
+    }
+
+    private String label() {
+        long now = System.nanoTime();
+        if (now - statsSince < FRAME_STATS_NANOS && loop.speed() == labelSpeed && view.scale == labelScale) {
+            return label;
+        }
+        String frameCost = String.format("frame p50 %.2f ms p99 %.2f ms", frameNanos.valueAtQuantile(0.5) / 1e6,
+                frameNanos.valueAtQuantile(0.99) / 1e6);
+        labelSpeed = loop.speed();
+        labelScale = view.scale;
+        label = (replaying ? "Replay" : "Arrows to Spawn Vehicles | R Random")
+                + String.format(" | %.3gx | +/- Speed | I Interpolation | WASD/Drag Pan | Wheel Zoom %.2f | F Fit"
+                        + " | ESC Exit | ", labelSpeed, labelScale)
+                + frameCost;
+        if (now - statsSince >= FRAME_STATS_NANOS) {
+            frameNanos.reset();
+            statsSince = now;
+        }
+        return label;
+    }
+
+    private static void usage() {
+        System.err.println("Usage: Main [--replay FILE | --record FILE] [--speed N] [--grid ROWSxCOLS]"
+                + " [--demand RATES]");
+        System.exit(2);
+    }
+
+    // --replay FILE plays a recorded trajectory back; --record FILE records this session;
+    // --speed N runs N times faster than real time; --grid shows a whole city, fed by
+    // --demand arrivals as in Headless.
+    public static void main(String[] args) throws IOException {
+
+        launched = System.nanoTime();
+        // Decodes on its own thread while the engine and window are set up.
+        SpriteCache sprites = SpriteCache.loadAsync();
+
+        TrajectoryReader replay = null;
+        TrajectoryRecorder recorder = null;
+        double speed = 1;
+        String grid = null;
+        String demandRates = null;
+        for (int i = 0; i < args.length; i += 2) {
+            switch (i + 1 < args.length ? args[i] : "") {
+                case "--replay":
+                    replay = new TrajectoryReader(Paths.get(args[i + 1]));
+                    break;
+                case "--record":
+                    recorder = new TrajectoryRecorder(Paths.get(args[i + 1]));
+                    break;
+                case "--speed":
+                    speed = Double.parseDouble(args[i + 1]);
+                    break;
+                case "--grid":
+                    grid = args[i + 1];
+                    break;
+                case "--demand":
+                    demandRates = args[i + 1];
+                    break;
+                default:
+                    usage();
+            }
+        }
+
+        SeededRandom random = new SeededRandom(System.nanoTime());
+        TrafficEngine engine;
+        if (grid != null) {
+            String[] size = grid.split("x");
+            if (size.length != 2 || recorder != null) {
+                usage();
+            }
+            engine = new Grid(Integer.parseInt(size[0]), Integer.parseInt(size[1]), new ForkJoinPool(), random);
+        } else {
+            engine = new Simulation(random);
+        }
+        SimulationLoop loop = new SimulationLoop(engine, replay, recorder);
+        loop.setSpeed(speed);
+        if (demandRates != null) {
+            TrafficDemand demand = new TrafficDemand(engine, random.split());
+            demand.parseRates(demandRates);
+            loop.setDemand(demand);
+        }
+
+        if (recorder != null) {
+            TrajectoryRecorder r = recorder;
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                try {
+                    r.close();
+                } catch (IOException e) {
+                    System.err.println("Failed to finish recording: " + e.getMessage());
+                }
+            }));
+        }
+
+        boolean replaying = replay != null;
+        SwingUtilities.invokeLater(() -> {
+            JFrame frame = new JFrame("Jraffic");
+            frame.setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
+            frame.add(new Main(loop, engine, replaying, sprites));
+            frame.pack();
+            frame.setVisible(true);
+        });
+
+    }
+}
@@ -0,0 +1,66 @@
+package jraffic;
+
+// Max-pressure in fixed decision slots: at the end of every slot the phase with
+// the largest upstream minus downstream queue gets the next one. Exits of a
+// single intersection always flow freely, so the downstream term is zero here
+// and pressure is the queue the phase releases. Ties keep the current phase.
+public class MaxPressureController implements SignalController {
+
+    public static final int SLOT = 300;
+
+    private static final MovementDirection[] DIRS = MovementDirection.values();
+
+    private final int slot;
+    private final TrafficConfig config;
+
+    public MaxPressureController(int slot) {
+        this(slot, new TrafficConfig());
+    }
+
+    public MaxPressureController(int slot, TrafficConfig config) {
+        this.slot = slot;
+        this.config = config;
+    }
+
+    @Override
+    public void update(TrafficSystem.TrafficHub hub, TrafficSystem.Counters counters) {
+        boolean clear = counters.inIntersection == 0;
+        hub.phaseDuration = slot;
+        hub.timer++;
+        if (hub.timer >= slot && hub.pendingPhase == null) {
+            hub.timer = 0;
+            MovementDirection best = hub.phase;
+            int most = TrafficSystem.servedQueue(counters, best);
+            for (MovementDirection phase : DIRS) {
+                int pressure = TrafficSystem.servedQueue(counters, phase);
+                if (pressure > most) {
+                    most = pressure;
+                    best = phase;
+                }
+            }
+            TrafficSystem.requestPhase(hub, best, clear);
+        }
+        TrafficSystem.settle(config, hub, clear);
+    }
+
+    @Override
+    public long quietTicks(TrafficSystem.TrafficHub hub, TrafficSystem.Counters counters) {
+        long quiet = TrafficSystem.settleQuietTicks(config, hub);
+        if (hub.pendingPhase == null) {
+            quiet = Math.min(quiet, slot - hub.timer - 1);
+        }
+        return Math.max(0, quiet);
+    }
+
+    @Override
+    public void skip(TrafficSystem.TrafficHub hub, TrafficSystem.Counters counters, long ticks) {
+        hub.phaseDuration = slot;
+        hub.timer += (int) ticks;
+        TrafficSystem.skipSettle(hub, ticks);
+    }
+
+    @Override
+    public String name() {
+        return "max-pressure";
+    }
+}
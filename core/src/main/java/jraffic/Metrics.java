@@ -0,0 +1,154 @@
+package jraffic;
+
+import java.io.PrintWriter;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+// Controller instrumentation fed by Simulation.update when attached. Approaches
+// are named by the startDir of their vehicles, as in TrafficSystem.Counters.
+// Recording only touches preallocated histograms and atomic counters from the
+// simulation thread; export may run on any thread at any time.
+public class Metrics {
+
+    private static final MovementDirection[] DIRS = MovementDirection.values();
+
+    // Queue length of every approach, sampled once per tick.
+    public final Histogram[] queueLength = new Histogram[DIRS.length];
+    // Ticks each vehicle stood still in its queue before crossing the stop line.
+    public final Histogram[] stopLineWait = new Histogram[DIRS.length];
+    // Length in ticks of every all-red window while a pendingPhase is waiting.
+    public final Histogram allRedWindow = new Histogram();
+    public final Histogram tickNanos = new Histogram();
+
+    // Stop-line crossings indexed by green phase * 4 + approach.
+    private final AtomicLongArray crossings = new AtomicLongArray(DIRS.length * DIRS.length);
+    private final AtomicLong ticks = new AtomicLong();
+    private final AtomicLong allRedTicks = new AtomicLong();
+
+    private int allRedRun;
+
+    public Metrics() {
+        for (int i = 0; i < DIRS.length; i++) {
+            queueLength[i] = new Histogram();
+            stopLineWait[i] = new Histogram();
+        }
+    }
+
+    // Called for a vehicle that was queued on an approach at the start of its move,
+    // with the layout that queue belongs to.
+    public void queued(Layout layout, Vehicle v, int approach, boolean stepped, TrafficSystem.TrafficHub hub) {
+        if (!stepped) {
+            v.waitTicks++;
+        } else if (layout.queueOf(v.startDir, v.turned, v.x, v.y) < 0) {
+            stopLineWait[approach].record(v.waitTicks);
+            int i = hub.phase.ordinal() * DIRS.length + approach;
+            crossings.lazySet(i, crossings.get(i) + 1);
+        }
+    }
+
+    public void tick(TrafficSystem.TrafficHub hub, TrafficSystem.Counters counters, long nanos) {
+        for (int i = 0; i < DIRS.length; i++) {
+            queueLength[i].record(counters.queues[i]);
+        }
+        if (hub.pendingPhase != null) {
+            allRedRun++;
+            allRedTicks.lazySet(allRedTicks.get() + 1);
+        } else if (allRedRun > 0) {
+            allRedWindow.record(allRedRun);
+            allRedRun = 0;
+        }
+        tickNanos.record(nanos);
+        ticks.lazySet(ticks.get() + 1);
+    }
+
+    public long ticks() {
+        return ticks.get();
+    }
+
+    public long allRedTicks() {
+        return allRedTicks.get();
+    }
+
+    public long crossings(MovementDirection phase, MovementDirection approach) {
+        return crossings.get(phase.ordinal() * DIRS.length + approach.ordinal());
+    }
+
+    public long crossingsDuring(MovementDirection phase) {
+        long total = 0;
+        for (MovementDirection approach : DIRS) {
+            total += crossings(phase, approach);
+        }
+        return total;
+    }
+
+    public void addTo(Metrics target) {
+        for (int i = 0; i < DIRS.length; i++) {
+            queueLength[i].addTo(target.queueLength[i]);
+            stopLineWait[i].addTo(target.stopLineWait[i]);
+        }
+        allRedWindow.addTo(target.allRedWindow);
+        tickNanos.addTo(target.tickNanos);
+        for (int i = 0; i < crossings.length(); i++) {
+            target.crossings.addAndGet(i, crossings.get(i));
+        }
+        target.ticks.addAndGet(ticks.get());
+        target.allRedTicks.addAndGet(allRedTicks.get());
+    }
+
+    public static void writeCsvHeader(PrintWriter out) {
+        out.println("tick,metric,count,mean,p50,p90,p99,max");
+    }
+
+    public void writeCsv(PrintWriter out, long tick) {
+        for (MovementDirection dir : DIRS) {
+            csv(out, tick, "queue." + dir, queueLength[dir.ordinal()]);
+            csv(out, tick, "wait." + dir, stopLineWait[dir.ordinal()]);
+        }
+        csv(out, tick, "allRedWindow", allRedWindow);
+        csv(out, tick, "tickNanos", tickNanos);
+        out.printf("%d,ticks,%d,,,,,%n", tick, ticks());
+        out.printf("%d,allRedTicks,%d,,,,,%n", tick, allRedTicks());
+        for (MovementDirection phase : DIRS) {
+            out.printf("%d,throughput.%s,%d,,,,,%n", tick, phase, crossingsDuring(phase));
+        }
+    }
+
+    private static void csv(PrintWriter out, long tick, String name, Histogram h) {
+        out.printf(Locale.ROOT, "%d,%s,%d,%.3f,%d,%d,%d,%d%n", tick, name, h.count(), h.mean(),
+                h.valueAtQuantile(0.5), h.valueAtQuantile(0.9), h.valueAtQuantile(0.99), h.max());
+    }
+
+    // One JSON object per line, so periodic exports form an NDJSON stream.
+    public void writeJson(PrintWriter out, long tick) {
+        StringBuilder sb = new StringBuilder();
+        sb.append("{\"tick\":").append(tick);
+        sb.append(",\"ticks\":").append(ticks());
+        sb.append(",\"allRedTicks\":").append(allRedTicks());
+        sb.append(",\"throughput\":{");
+        for (MovementDirection phase : DIRS) {
+            if (phase.ordinal() > 0) {
+                sb.append(',');
+            }
+            sb.append('"').append(phase).append("\":").append(crossingsDuring(phase));
+        }
+        sb.append("},\"histograms\":{");
+        for (MovementDirection dir : DIRS) {
+            json(sb, "queue." + dir, queueLength[dir.ordinal()]).append(',');
+            json(sb, "wait." + dir, stopLineWait[dir.ordinal()]).append(',');
+        }
+        json(sb, "allRedWindow", allRedWindow).append(',');
+        json(sb, "tickNanos", tickNanos);
+        sb.append("}}");
+        out.println(sb);
+    }
+
+    private static StringBuilder json(StringBuilder sb, String name, Histogram h) {
+        return sb.append('"').append(name).append("\":{\"count\":").append(h.count())
+                .append(",\"mean\":").append(String.format(Locale.ROOT, "%.3f", h.mean()))
+                .append(",\"p50\":").append(h.valueAtQuantile(0.5))
+                .append(",\"p90\":").append(h.valueAtQuantile(0.9))
+                .append(",\"p99\":").append(h.valueAtQuantile(0.99))
+                .append(",\"max\":").append(h.max()).append('}');
+    }
+}
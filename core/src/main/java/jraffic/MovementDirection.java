@@ -1,3 +1,5 @@
+package jraffic;
+
 public enum MovementDirection {
     North,
     South,
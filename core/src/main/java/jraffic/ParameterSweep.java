@@ -0,0 +1,350 @@
+package jraffic;
+
+import java.io.BufferedWriter;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ForkJoinPool;
+
+// Runs one headless simulation per TrafficConfig and seed over a parameter grid,
+// or over random samples of it, on a work-stealing pool, and writes a CSV row
+// as soon as each run finishes. Rows therefore arrive in completion order; the
+// config column groups the seeds of one configuration. Seed r of every config
+// is seed + r for both engine and demand, so configs see the same arrivals.
+// With --restore every run starts from one warmed-up Checkpoint instead of an
+// empty intersection and re-seeds its streams from seed + r there, so seeds
+// become different futures of the same state.
+//
+// Each run builds its config from its index, and only a few runs per thread
+// are in flight, so a sweep of any size holds a bounded number of configs. A
+// run that throws gets a row with its error instead of ending the sweep.
+public class ParameterSweep {
+
+    private static final MovementDirection[] DIRS = MovementDirection.values();
+    private static final int IN_FLIGHT_PER_THREAD = 4;
+
+    // The configurations of a sweep: either the whole grid, enumerated in mixed
+    // radix with the last parameter varying fastest, or samples drawn uniformly
+    // from it, sample k from its own stream so any one can be drawn alone.
+    private static class Space {
+
+        final TrafficConfig base;
+        final List<String> names;
+        final List<int[]> values;
+        final int samples;
+        final long seed;
+        final long size;
+
+        Space(TrafficConfig base, List<String> names, List<int[]> values, int samples, long seed) {
+            this.base = base;
+            this.names = names;
+            this.values = values;
+            this.samples = samples;
+            this.seed = seed;
+            long total = 1;
+            for (int[] choices : values) {
+                total = Math.multiplyExact(total, choices.length);
+            }
+            this.size = samples > 0 ? samples : total;
+        }
+
+        TrafficConfig config(long index) {
+            TrafficConfig config = base.copy();
+            if (samples > 0) {
+                SeededRandom random = new SeededRandom(SeededRandom.mix64(seed + index));
+                for (int p = 0; p < names.size(); p++) {
+                    int[] choices = values.get(p);
+                    config.set(names.get(p), choices[random.nextInt(choices.length)]);
+                }
+                return config;
+            }
+            long rest = index;
+            for (int p = names.size() - 1; p >= 0; p--) {
+                int[] choices = values.get(p);
+                config.set(names.get(p), choices[(int) (rest % choices.length)]);
+                rest /= choices.length;
+            }
+            return config;
+        }
+    }
+
+    private static class Run implements Callable<Run> {
+
+        final long index;
+        final Space space;
+        final Layout layout;
+        final long seed;
+        final long ticks;
+        final String controller;
+        final String rates;
+        final String routes;
+        final String profile;
+        final long profilePeriod;
+        final Checkpoint checkpoint;
+
+        TrafficConfig config;
+        // The exception's text when the run failed, else null.
+        String error;
+        long despawned;
+        long generated;
+        int backlog;
+        double waitMean;
+        long waitP99;
+        long waitMax;
+        long nanos;
+
+        Run(long index, Space space, Layout layout, long seed, long ticks, String controller, String rates,
+                String routes, String profile, long profilePeriod, Checkpoint checkpoint) {
+            this.index = index;
+            this.space = space;
+            this.layout = layout;
+            this.seed = seed;
+            this.ticks = ticks;
+            this.controller = controller;
+            this.rates = rates;
+            this.routes = routes;
+            this.profile = profile;
+            this.profilePeriod = profilePeriod;
+            this.checkpoint = checkpoint;
+        }
+
+        // Keeps only the summary, so thousands of finished runs stay small.
+        @Override
+        public Run call() {
+            long start = System.nanoTime();
+            config = space.config(index);
+            try {
+                simulate();
+            } catch (RuntimeException e) {
+                error = e.toString();
+            }
+            nanos = System.nanoTime() - start;
+            return this;
+        }
+
+        private void simulate() {
+            Simulation sim = new Simulation(new SeededRandom(seed), config, layout);
+            sim.controller = SignalController.create(controller, config);
+            sim.metrics = new Metrics();
+            TrafficDemand demand = new TrafficDemand(sim, new SeededRandom(seed).split());
+            demand.parseRates(rates);
+            if (routes != null) {
+                demand.parseRoutes(routes);
+            }
+            if (profile != null) {
+                demand.parseProfile(profile, profilePeriod);
+            }
+            long first = 0;
+            if (checkpoint != null) {
+                checkpoint.restore(sim, demand);
+                SeededRandom fresh = new SeededRandom(seed);
+                sim.random.set(fresh.state(), fresh.gamma());
+                demand.reseed(new SeededRandom(seed).split());
+                first = checkpoint.tick();
+            }
+            long despawnedBefore = sim.despawned;
+            long generatedBefore = demand.generated;
+            for (long i = first; i < first + ticks; i++) {
+                demand.inject(i);
+                sim.update();
+            }
+            Histogram wait = new Histogram();
+            for (MovementDirection dir : DIRS) {
+                sim.metrics.stopLineWait[dir.ordinal()].addTo(wait);
+            }
+            despawned = sim.despawned - despawnedBefore;
+            generated = demand.generated - generatedBefore;
+            backlog = demand.backlog();
+            waitMean = wait.mean();
+            waitP99 = wait.valueAtQuantile(0.99);
+            waitMax = wait.max();
+        }
+    }
+
+    private static void usage() {
+        System.err.println("Usage: ParameterSweep --param NAME=FROM:TO[:STEP]|NAME=V1,V2,... [--param ...]"
+                + " [--random N] [--seeds N] [--ticks N] [--seed N] [--threads N] [--controller NAME]"
+                + " [--base NAME=VALUE,...] [--demand RATES] [--routes B,Y,B] [--profile T:F,...]"
+                + " [--profile-period N] [--layout FILE|NAME] [--restore FILE] [--out FILE.csv]");
+        System.err.println("Parameters: " + String.join(", ", TrafficConfig.NAMES));
+        System.exit(2);
+    }
+
+    // FROM:TO[:STEP] inclusive, or a comma-separated list.
+    private static int[] values(String spec) {
+        if (spec.contains(":")) {
+            String[] range = spec.split(":");
+            int from = Integer.parseInt(range[0]);
+            int to = Integer.parseInt(range[1]);
+            int step = range.length > 2 ? Integer.parseInt(range[2]) : 1;
+            if (range.length > 3 || step <= 0 || to < from) {
+                usage();
+            }
+            int[] values = new int[(to - from) / step + 1];
+            for (int i = 0; i < values.length; i++) {
+                values[i] = from + i * step;
+            }
+            return values;
+        }
+        String[] items = spec.split(",");
+        int[] values = new int[items.length];
+        for (int i = 0; i < items.length; i++) {
+            values[i] = Integer.parseInt(items[i].trim());
+        }
+        return values;
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException, ExecutionException {
+
+        List<String> names = new ArrayList<>();
+        List<int[]> values = new ArrayList<>();
+        int samples = 0;
+        int seeds = 1;
+        long ticks = 54_000;
+        long seed = System.nanoTime();
+        int threads = Runtime.getRuntime().availableProcessors();
+        String controller = "adaptive";
+        TrafficConfig base = new TrafficConfig();
+        Layout layout = Layout.DEFAULT;
+        String rates = "0.01";
+        String routes = null;
+        String profile = null;
+        long profilePeriod = 0;
+        String outFile = null;
+        Checkpoint checkpoint = null;
+
+        for (int i = 0; i < args.length; i++) {
+            if (i + 1 >= args.length) {
+                usage();
+            }
+            switch (args[i]) {
+                case "--param":
+                    String[] param = args[++i].split("=", 2);
+                    if (param.length != 2) {
+                        usage();
+                    }
+                    int[] choices = values(param[1]);
+                    for (int v : choices) {
+                        try {
+                            base.copy().set(param[0], v);
+                        } catch (IllegalArgumentException e) {
+                            System.err.println(e.getMessage());
+                            System.exit(2);
+                        }
+                    }
+                    names.add(param[0]);
+                    values.add(choices);
+                    break;
+                case "--random":
+                    samples = Integer.parseInt(args[++i]);
+                    break;
+                case "--seeds":
+                    seeds = Integer.parseInt(args[++i]);
+                    break;
+                case "--ticks":
+                    ticks = Long.parseLong(args[++i]);
+                    break;
+                case "--seed":
+                    seed = Long.parseLong(args[++i]);
+                    break;
+                case "--threads":
+                    threads = Integer.parseInt(args[++i]);
+                    break;
+                case "--controller":
+                    controller = args[++i];
+                    break;
+                case "--base":
+                    base.parse(args[++i]);
+                    break;
+                case "--demand":
+                    rates = args[++i];
+                    break;
+                case "--routes":
+                    routes = args[++i];
+                    break;
+                case "--profile":
+                    profile = args[++i];
+                    break;
+                case "--profile-period":
+                    profilePeriod = Long.parseLong(args[++i]);
+                    break;
+                case "--layout":
+                    layout = Layout.named(args[++i]);
+                    break;
+                case "--restore":
+                    checkpoint = Checkpoint.read(Paths.get(args[++i]));
+                    break;
+                case "--out":
+                    outFile = args[++i];
+                    break;
+                default:
+                    usage();
+            }
+        }
+        if (names.isEmpty()) {
+            usage();
+        }
+        SignalController.create(controller);
+
+        Space space;
+        try {
+            space = new Space(base, names, values, samples, seed);
+        } catch (ArithmeticException e) {
+            System.err.println("Grid has more than " + Long.MAX_VALUE + " configs; use --random N");
+            System.exit(2);
+            return;
+        }
+
+        PrintWriter out = new PrintWriter(new BufferedWriter(outFile != null ? new FileWriter(outFile)
+                : new OutputStreamWriter(System.out)));
+        out.print("config,seed");
+        for (String name : TrafficConfig.NAMES) {
+            out.print("," + name);
+        }
+        out.println(",veh_per_1000_ticks,generated,despawned,wait_mean,wait_p99,wait_max,backlog,run_ms,error");
+        out.flush();
+
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        CompletionService<Run> done = new ExecutorCompletionService<>(pool);
+        long runs = Math.multiplyExact(space.size, seeds);
+        long submitted = 0;
+        int failed = 0;
+
+        long start = System.nanoTime();
+        for (long n = 0; n < runs; n++) {
+            for (; submitted < runs && submitted - n < (long) threads * IN_FLIGHT_PER_THREAD; submitted++) {
+                done.submit(new Run(submitted / seeds, space, layout, seed + submitted % seeds, ticks, controller,
+                        rates, routes, profile, profilePeriod, checkpoint));
+            }
+            Run run = done.take().get();
+            out.print(run.index + "," + run.seed);
+            for (String name : TrafficConfig.NAMES) {
+                out.print("," + run.config.get(name));
+            }
+            if (run.error != null) {
+                out.printf(",,,,,,,,%d,\"%s\"%n", run.nanos / 1_000_000, run.error.replace('"', '\''));
+                failed++;
+            } else {
+                out.printf(",%.3f,%d,%d,%.2f,%d,%d,%d,%d,%n", 1000.0 * run.despawned / ticks, run.generated,
+                        run.despawned, run.waitMean, run.waitP99, run.waitMax, run.backlog, run.nanos / 1_000_000);
+            }
+            out.flush();
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        pool.shutdown();
+        out.close();
+        System.err.printf("%d runs of %d ticks in %.1fs (%.1f runs/s, %.3g ticks/s) on %d threads%n", runs, ticks,
+                seconds, runs / seconds, runs * (double) ticks / seconds, threads);
+        if (failed > 0) {
+            System.err.printf("%d runs failed; see the error column%n", failed);
+        }
+    }
+}
@@ -0,0 +1,260 @@
+package jraffic;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.GraphicsConfiguration;
+import java.awt.GraphicsEnvironment;
+import java.awt.Image;
+import java.awt.Transparency;
+import java.awt.geom.AffineTransform;
+import java.awt.image.BufferedImage;
+import java.awt.image.VolatileImage;
+
+// Draws a Snapshot of one intersection or a whole grid. The road is rendered once
+// into a cached layer and sprites come pre-scaled from the SpriteCache, so at
+// scale 1 a frame is one blit per visible cell plus one unscaled blit per
+// visible vehicle.
+public class Renderer {
+
+    public static final int WIDTH = 800;
+    public static final int HEIGHT = 700;
+    // Below SPRITE_SCALE vehicles are dots, below DOT_SCALE a heatmap of index buckets.
+    public static final double SPRITE_SCALE = 0.35;
+    public static final double DOT_SCALE = 0.1;
+
+    private static final Color BACKGROUND = new Color(5, 8, 15);
+    private static final Color ROAD = new Color(18, 20, 25);
+    private static final Color CENTER = new Color(12, 15, 20);
+    private static final Color GLOW = new Color(0, 128, 255, 51);
+    private static final Color RING = new Color(0, 128, 255, 204);
+    private static final Color LIGHT_ON = new Color(32, 255, 48);
+    private static final Color LIGHT_OFF = new Color(255, 16, 32);
+    private static final Color LABEL = new Color(48, 144, 255, 229);
+
+    private static final int FALLBACK_WIDTH = (int) Math.round(30 * SpriteCache.SCALE);
+    private static final int FALLBACK_HEIGHT = (int) Math.round(45 * SpriteCache.SCALE);
+
+    private static final int DOT_PIXELS = 3;
+    // Bucket colors by vehicle count, the last one for that many or more.
+    private static final Color[] HEAT = { new Color(0, 96, 255, 96), new Color(0, 200, 160, 128),
+            new Color(255, 200, 0, 160), new Color(255, 64, 0, 200) };
+
+    private final SpriteCache sprites;
+    private final SpatialIndex index = new SpatialIndex();
+    private Snapshot frame = new Snapshot();
+    private Snapshot previous = frame;
+    // Index in previous of the same vehicle heading the same way, or -1.
+    private int[] previousOf = new int[32];
+    private final boolean accelerated = !GraphicsEnvironment.isHeadless();
+    private BufferedImage road;
+    private VolatileImage roadLayer;
+
+    public Renderer(SpriteCache sprites) {
+        this.sprites = sprites;
+    }
+
+    // Takes a new pair of snapshots: indexes frame for culling and matches every
+    // vehicle to where it was in previous. Both stay in use until the next call.
+    public void prepare(Snapshot frame, Snapshot previous) {
+        this.frame = frame;
+        this.previous = previous;
+        index.build(frame);
+        if (previousOf.length < frame.size) {
+            previousOf = new int[Math.max(frame.size, previousOf.length * 2)];
+        }
+        int j = 0;
+        for (int i = 0; i < frame.size; i++) {
+            // Both snapshots are ordered by id; vehicles that turned in between are not blended.
+            while (j < previous.size && previous.id[j] < frame.id[i]) {
+                j++;
+            }
+            boolean same = j < previous.size && previous.id[j] == frame.id[i] && previous.dir(j) == frame.dir(i);
+            previousOf[i] = same ? j : -1;
+        }
+    }
+
+    // Draws the prepared frame as seen through view, with every vehicle moved alpha
+    // of the way from where it was in previous; alpha 1 draws frame as is. Only
+    // cells and index buckets overlapping the view are visited, and the level of
+    // detail drops from sprites to dots to a density heatmap as the view zooms out.
+    public void draw(Graphics2D g, Viewport view, double alpha, String label) {
+
+        GraphicsConfiguration gc = g.getDeviceConfiguration();
+        g.setColor(BACKGROUND);
+        g.fillRect(0, 0, view.width, view.height);
+
+        int cellFrom = Math.max(0, (int) Math.floor(view.left / Snapshot.CELL_WIDTH));
+        int cellTo = Math.min(frame.cols - 1, (int) Math.floor(view.right() / Snapshot.CELL_WIDTH));
+        int rowFrom = Math.max(0, (int) Math.floor(view.top / Snapshot.CELL_HEIGHT));
+        int rowTo = Math.min(frame.rows - 1, (int) Math.floor(view.bottom() / Snapshot.CELL_HEIGHT));
+
+        int margin = SpriteCache.height(MovementDirection.North);
+        int c0 = index.column((int) view.left - margin);
+        int c1 = index.column((int) Math.ceil(view.right()) + margin);
+        int r0 = index.row((int) view.top - margin);
+        int r1 = index.row((int) Math.ceil(view.bottom()) + margin);
+
+        if (view.scale >= SPRITE_SCALE) {
+            AffineTransform screen = g.getTransform();
+            g.scale(view.scale, view.scale);
+            g.translate(-view.left, -view.top);
+            for (int row = rowFrom; row <= rowTo; row++) {
+                for (int col = cellFrom; col <= cellTo; col++) {
+                    int x = col * Snapshot.CELL_WIDTH;
+                    int y = row * Snapshot.CELL_HEIGHT;
+                    int cell = row * frame.cols + col;
+                    g.drawImage(road(gc), x, y, null);
+                    drawTrafficLight(g, x + 310, y + 260, frame.lightOn(cell, MovementDirection.North));
+                    drawTrafficLight(g, x + 310, y + 410, frame.lightOn(cell, MovementDirection.West));
+                    drawTrafficLight(g, x + 460, y + 410, frame.lightOn(cell, MovementDirection.South));
+                    drawTrafficLight(g, x + 460, y + 260, frame.lightOn(cell, MovementDirection.East));
+                }
+            }
+            for (int r = r0; r <= r1; r++) {
+                for (int c = c0; c <= c1; c++) {
+                    int b = c + r * index.cols;
+                    for (int k = index.start[b]; k < index.start[b + 1]; k++) {
+                        drawSprite(g, gc, index.items[k], alpha);
+                    }
+                }
+            }
+            g.setTransform(screen);
+        } else {
+            // Zoomed out, everything is placed in whole screen pixels, which keeps
+            // Java2D on its untransformed fill path.
+            for (int row = rowFrom; row <= rowTo; row++) {
+                for (int col = cellFrom; col <= cellTo; col++) {
+                    drawPlainCell(g, view, row * frame.cols + col, col * Snapshot.CELL_WIDTH,
+                            row * Snapshot.CELL_HEIGHT);
+                }
+            }
+            if (view.scale >= DOT_SCALE) {
+                for (int r = r0; r <= r1; r++) {
+                    for (int c = c0; c <= c1; c++) {
+                        int b = c + r * index.cols;
+                        for (int k = index.start[b]; k < index.start[b + 1]; k++) {
+                            drawDot(g, view, index.items[k], alpha);
+                        }
+                    }
+                }
+            } else {
+                for (int r = r0; r <= r1; r++) {
+                    for (int c = c0; c <= c1; c++) {
+                        int count = index.count(c, r);
+                        if (count > 0) {
+                            g.setColor(HEAT[Math.min(count, HEAT.length) - 1]);
+                            fillWorldRect(g, view, SpatialIndex.left(c), SpatialIndex.top(r), SpatialIndex.BUCKET,
+                                    SpatialIndex.BUCKET);
+                        }
+                    }
+                }
+            }
+        }
+
+        g.setColor(LABEL);
+        g.drawString(label, 12, 24);
+    }
+
+    // The road as two strips; lights are kept as squares while vehicles are dots.
+    private void drawPlainCell(Graphics2D g, Viewport view, int cell, int x, int y) {
+        g.setColor(ROAD);
+        fillWorldRect(g, view, x, y + 300, Snapshot.CELL_WIDTH, 100);
+        fillWorldRect(g, view, x + 350, y, 100, Snapshot.CELL_HEIGHT);
+        if (view.scale < DOT_SCALE) {
+            return;
+        }
+        drawPlainLight(g, view, x + 310, y + 260, frame.lightOn(cell, MovementDirection.North));
+        drawPlainLight(g, view, x + 310, y + 410, frame.lightOn(cell, MovementDirection.West));
+        drawPlainLight(g, view, x + 460, y + 410, frame.lightOn(cell, MovementDirection.South));
+        drawPlainLight(g, view, x + 460, y + 260, frame.lightOn(cell, MovementDirection.East));
+    }
+
+    private void drawPlainLight(Graphics2D g, Viewport view, int x, int y, boolean isOn) {
+        g.setColor(isOn ? LIGHT_ON : LIGHT_OFF);
+        fillWorldRect(g, view, x, y, 30, 30);
+    }
+
+    // At least one pixel, so thin roads do not vanish.
+    private static void fillWorldRect(Graphics2D g, Viewport view, int x, int y, int width, int height) {
+        int sx = view.screenX(x);
+        int sy = view.screenY(y);
+        g.fillRect(sx, sy, Math.max(1, view.screenX(x + width) - sx), Math.max(1, view.screenY(y + height) - sy));
+    }
+
+    private int blendX(int i, double alpha) {
+        int j = previousOf[i];
+        return alpha < 1 && j >= 0 ? (int) Math.round(previous.x[j] + (frame.x[i] - previous.x[j]) * alpha)
+                : frame.x[i];
+    }
+
+    private int blendY(int i, double alpha) {
+        int j = previousOf[i];
+        return alpha < 1 && j >= 0 ? (int) Math.round(previous.y[j] + (frame.y[i] - previous.y[j]) * alpha)
+                : frame.y[i];
+    }
+
+    private void drawSprite(Graphics2D g, GraphicsConfiguration gc, int i, double alpha) {
+        MovementDirection dir = frame.dir(i);
+        int vx = blendX(i, alpha);
+        int vy = blendY(i, alpha);
+        Image img = sprites.sprite(gc, frame.color(i), dir);
+        if (img != null) {
+            g.drawImage(img, vx - SpriteCache.width(dir) / 2, vy - SpriteCache.height(dir) / 2, null);
+        } else {
+            g.setColor(Vehicle.color(Vehicle.COLOR_NAMES[frame.color(i)]));
+            g.fillRect(vx - FALLBACK_WIDTH / 2, vy - FALLBACK_HEIGHT / 2, FALLBACK_WIDTH, FALLBACK_HEIGHT);
+        }
+    }
+
+    private void drawDot(Graphics2D g, Viewport view, int i, double alpha) {
+        g.setColor(Vehicle.color(Vehicle.COLOR_NAMES[frame.color(i)]));
+        g.fillRect(view.screenX(blendX(i, alpha)) - DOT_PIXELS / 2, view.screenY(blendY(i, alpha)) - DOT_PIXELS / 2,
+                DOT_PIXELS, DOT_PIXELS);
+    }
+
+    private void drawTrafficLight(Graphics2D g, int x, int y, boolean isOn) {
+        g.setColor(isOn ? LIGHT_ON : LIGHT_OFF);
+        g.fillOval(x, y, 30, 30);
+    }
+
+    private Image road(GraphicsConfiguration gc) {
+        if (road == null) {
+            road = new BufferedImage(WIDTH, HEIGHT, BufferedImage.TYPE_INT_RGB);
+            Graphics2D g = road.createGraphics();
+            drawRoad(g);
+            g.dispose();
+        }
+        if (!accelerated || gc == null) {
+            return road;
+        }
+        int status = roadLayer == null ? VolatileImage.IMAGE_INCOMPATIBLE : roadLayer.validate(gc);
+        if (status == VolatileImage.IMAGE_INCOMPATIBLE) {
+            roadLayer = gc.createCompatibleVolatileImage(WIDTH, HEIGHT, Transparency.OPAQUE);
+            status = VolatileImage.IMAGE_RESTORED;
+        }
+        if (status == VolatileImage.IMAGE_RESTORED) {
+            Graphics2D g = roadLayer.createGraphics();
+            g.drawImage(road, 0, 0, null);
+            g.dispose();
+        }
+        return roadLayer;
+    }
+
+    private static void drawRoad(Graphics2D g) {
+
+        g.setColor(BACKGROUND);
+        g.fillRect(0, 0, WIDTH, HEIGHT);
+
+        g.setColor(ROAD);
+        g.fillRect(0, 300, 800, 100);
+        g.fillRect(350, 0, 100, 700);
+
+        g.setColor(CENTER);
+        g.fillRect(350, 300, 100, 100);
+
+        g.setColor(GLOW);
+        g.fillOval(387, 337, 25, 25);
+        g.setColor(RING);
+        g.drawOval(392, 342, 15, 15);
+    }
+}
@@ -0,0 +1,20 @@
+package jraffic;
+
+// One vehicle at a time, without branches, for whatever the JIT makes of it.
+public class ScalarGapKernel implements GapKernel {
+
+    @Override
+    public void decide(int[] progress, int[] ahead, int from, int to, int stop, boolean red, int safe,
+            boolean[] moving, boolean[] stepping) {
+        for (int k = from; k < to; k++) {
+            boolean m = !red || progress[k] != stop;
+            moving[k] = m;
+            stepping[k] = m & ahead[k] > progress[k] + safe;
+        }
+    }
+
+    @Override
+    public String name() {
+        return "scalar";
+    }
+}
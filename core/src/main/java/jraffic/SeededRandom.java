@@ -0,0 +1,68 @@
+package jraffic;
+
+// SplitMix64, the generator behind java.util.SplittableRandom, with its state
+// kept in plain fields. Each spawn source owns one, derived by split() from a
+// single run seed in a fixed order, so a seed replays the same traffic no matter
+// how many threads step the simulation.
+public class SeededRandom {
+
+    private static final long GOLDEN_GAMMA = 0x9e3779b97f4a7c15L;
+
+    private long seed;
+    private long gamma;
+
+    public SeededRandom(long seed) {
+        this(seed, GOLDEN_GAMMA);
+    }
+
+    private SeededRandom(long seed, long gamma) {
+        this.seed = seed;
+        this.gamma = gamma;
+    }
+
+    public static long mix64(long z) {
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+
+    private static long mixGamma(long z) {
+        z = (z ^ (z >>> 33)) * 0xff51afd7ed558ccdL;
+        z = (z ^ (z >>> 33)) * 0xc4ceb9fe1a85ec53L;
+        z = (z ^ (z >>> 33)) | 1L;
+        int n = Long.bitCount(z ^ (z >>> 1));
+        return n < 24 ? z ^ 0xaaaaaaaaaaaaaaaaL : z;
+    }
+
+    public long nextLong() {
+        seed += gamma;
+        return mix64(seed);
+    }
+
+    public int nextInt(int bound) {
+        return (int) (((nextLong() >>> 32) * bound) >>> 32);
+    }
+
+    public double nextDouble() {
+        return (nextLong() >>> 11) * 0x1.0p-53;
+    }
+
+    // The whole generator is these two words; a Checkpoint saves and restores them.
+    public long state() {
+        return seed;
+    }
+
+    public long gamma() {
+        return gamma;
+    }
+
+    public void set(long state, long gamma) {
+        this.seed = state;
+        this.gamma = gamma;
+    }
+
+    public SeededRandom split() {
+        long s = nextLong();
+        return new SeededRandom(s, mixGamma(seed += gamma));
+    }
+}
@@ -0,0 +1,48 @@
+package jraffic;
+
+// Decides the lights of one intersection once per tick, before vehicles move.
+// Implementations change phases through TrafficSystem.requestPhase and finish
+// with TrafficSystem.settle, so every policy gets the same all-red clearance.
+public interface SignalController {
+
+    String[] NAMES = { "adaptive", "fixed", "max-pressure", "lqf" };
+
+    void update(TrafficSystem.TrafficHub hub, TrafficSystem.Counters counters);
+
+    String name();
+
+    // How many of the next update calls, with counters unchanged, would only
+    // count time and leave the phase, the pending phase and the lights alone.
+    // Engines that jump over quiet stretches apply them with skip; 0 means
+    // every tick has to run.
+    default long quietTicks(TrafficSystem.TrafficHub hub, TrafficSystem.Counters counters) {
+        return 0;
+    }
+
+    // Same as that many update calls, for at most quietTicks of them.
+    default void skip(TrafficSystem.TrafficHub hub, TrafficSystem.Counters counters, long ticks) {
+        for (long i = 0; i < ticks; i++) {
+            update(hub, counters);
+        }
+    }
+
+    static SignalController create(String name) {
+        return create(name, new TrafficConfig());
+    }
+
+    static SignalController create(String name, TrafficConfig config) {
+        switch (name) {
+            case "adaptive":
+                return new AdaptiveController(config);
+            case "fixed":
+                return new FixedTimeController(FixedTimeController.GREEN, config);
+            case "max-pressure":
+                return new MaxPressureController(MaxPressureController.SLOT, config);
+            case "lqf":
+                return new LongestQueueController(LongestQueueController.MIN_GREEN,
+                        LongestQueueController.MAX_GREEN, config);
+            default:
+                throw new IllegalArgumentException("Unknown controller: " + name);
+        }
+    }
+}
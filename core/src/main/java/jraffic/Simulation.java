@@ -0,0 +1,307 @@
+package jraffic;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class Simulation implements TrafficEngine {
+
+    public static final int MAX_VEHICLES = 28;
+    private static final int MIN_SPAWN_DISTANCE = 80;
+    private static final MovementDirection[] DIRS = MovementDirection.values();
+
+    public final List<Vehicle> vehicleList = new ArrayList<>();
+    public final TrafficSystem.TrafficHub hub = new TrafficSystem.TrafficHub();
+    public final TrafficConfig config;
+    public final Layout layout;
+    public final LaneIndex lanes;
+    public final TrafficSystem.Counters counters;
+    // Vehicles that left the map during the last update, in despawn order.
+    public final List<Vehicle> exits = new ArrayList<>();
+    public final SeededRandom random;
+    public Metrics metrics;
+    // Records every despawning vehicle's trip when set. In a Grid cell most
+    // despawns are handoffs, so whole trips are recorded by Grid.trips.
+    public TripStats trips;
+
+    public SignalController controller;
+    public int maxVehicles = MAX_VEHICLES;
+    public long tick;
+    public long spawned;
+    public long despawned;
+
+    public Simulation() {
+        this(new SeededRandom(System.nanoTime()));
+    }
+
+    public Simulation(SeededRandom random) {
+        this(random, new TrafficConfig());
+    }
+
+    public Simulation(SeededRandom random, TrafficConfig config) {
+        this(random, config, Layout.DEFAULT);
+    }
+
+    public Simulation(SeededRandom random, TrafficConfig config, Layout layout) {
+        this.random = random;
+        this.config = config;
+        this.layout = layout;
+        this.lanes = new LaneIndex(config.safeDistance, layout);
+        this.counters = new TrafficSystem.Counters(layout);
+        this.controller = new AdaptiveController(config);
+    }
+
+    @Override
+    public void update() {
+
+        long start = metrics != null ? System.nanoTime() : 0;
+
+        exits.clear();
+
+        controller.update(hub, counters);
+
+        for (Vehicle vehicle : vehicleList) {
+            TrafficSystem.checkLights(layout, vehicle, hub);
+
+            boolean stepping = vehicle.moving && !lanes.blocked(vehicle);
+            int queued = metrics != null
+                    ? layout.queueOf(vehicle.startDir, vehicle.turned, vehicle.x, vehicle.y)
+                    : -1;
+            if (stepping || !vehicle.turned) {
+                counters.remove(vehicle);
+                if (stepping) {
+                    lanes.step(vehicle);
+                }
+                if (!vehicle.turned) {
+                    lanes.turnCheck(vehicle);
+                }
+                counters.add(vehicle);
+            }
+            if (!stepping) {
+                vehicle.stoppedTicks++;
+            }
+            if (queued >= 0) {
+                metrics.queued(layout, vehicle, queued, stepping, hub);
+            }
+        }
+
+        vehicleList.removeIf(this::despawn);
+
+        if (metrics != null) {
+            metrics.tick(hub, counters, System.nanoTime() - start);
+        }
+
+        tick++;
+    }
+
+    private boolean despawn(Vehicle v) {
+        if (!layout.onMap(v.x, v.y)) {
+            lanes.remove(v);
+            counters.remove(v);
+            exits.add(v);
+            if (trips != null) {
+                trips.record(v, tick + 1 - v.entryTick);
+            }
+            despawned++;
+            return true;
+        }
+        return false;
+    }
+
+    public void run(long ticks) {
+        for (long i = 0; i < ticks; i++) {
+            update();
+        }
+    }
+
+    private boolean canSpawnVehicle(int spawnX, int spawnY, MovementDirection dir) {
+
+        if (vehicleList.size() >= maxVehicles) {
+            return false;
+        }
+
+        return spawnPointClear(spawnX, spawnY, dir);
+    }
+
+    private boolean spawnPointClear(int spawnX, int spawnY, MovementDirection dir) {
+
+        // Vehicles near a spawn point have not turned yet, so they sit at the tail of its lane.
+        int limit = LaneIndex.progress(spawnX, spawnY, dir) + MIN_SPAWN_DISTANCE;
+        for (int i = 0; i < lanes.size(dir) && LaneIndex.progress(lanes.get(dir, i)) < limit; i++) {
+            Vehicle v = lanes.get(dir, i);
+            if (v.startDir == dir
+                    && Math.abs(spawnX - v.x) < MIN_SPAWN_DISTANCE
+                    && Math.abs(spawnY - v.y) < MIN_SPAWN_DISTANCE) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public void clear() {
+        vehicleList.clear();
+        lanes.clear();
+        counters.clear();
+        exits.clear();
+        hub.reset();
+        tick = 0;
+        spawned = 0;
+        despawned = 0;
+    }
+
+    // Starts the vehicle's trip here.
+    public void add(Vehicle vehicle) {
+        vehicle.entryTick = tick;
+        vehicle.stoppedTicks = 0;
+        insert(vehicle);
+    }
+
+    private void insert(Vehicle vehicle) {
+        vehicle.id = spawned;
+        vehicleList.add(vehicle);
+        lanes.add(vehicle);
+        counters.add(vehicle);
+        spawned++;
+    }
+
+    // Spawn points of Layout.DEFAULT.
+    public static int spawnX(MovementDirection dir) {
+        return Layout.DEFAULT.spawnX[dir.ordinal()];
+    }
+
+    public static int spawnY(MovementDirection dir) {
+        return Layout.DEFAULT.spawnY[dir.ordinal()];
+    }
+
+    // Moves an existing vehicle onto the spawn point of its current direction,
+    // as when it arrives from a neighboring road segment. Its trip carries on:
+    // origin, entry tick and stopped ticks are kept. Admitted on spacing alone,
+    // as spawn() admits arrivals; maxVehicles does not apply.
+    public boolean enter(Vehicle vehicle) {
+        int x = layout.spawnX[vehicle.dir.ordinal()];
+        int y = layout.spawnY[vehicle.dir.ordinal()];
+        if (!spawnPointClear(x, y, vehicle.dir)) {
+            return false;
+        }
+        vehicle.x = x;
+        vehicle.y = y;
+        vehicle.startDir = vehicle.dir;
+        vehicle.turned = false;
+        vehicle.moving = false;
+        vehicle.waitTicks = 0;
+        insert(vehicle);
+        return true;
+    }
+
+    public boolean addVehicleAt(int x, int y, MovementDirection dir) {
+        if (canSpawnVehicle(x, y, dir)) {
+            add(Vehicle.spawn(x, y, dir, Vehicle.randColorName(random)));
+            return true;
+        }
+        return false;
+    }
+
+    public boolean addVehicleAt(MovementDirection dir) {
+        return addVehicleAt(layout.spawnX[dir.ordinal()], layout.spawnY[dir.ordinal()], dir);
+    }
+
+    public void addSouth() {
+        addVehicleAt(MovementDirection.South);
+    }
+
+    public void addNorth() {
+        addVehicleAt(MovementDirection.North);
+    }
+
+    public void addWest() {
+        addVehicleAt(MovementDirection.East);
+    }
+
+    public void addEast() {
+        addVehicleAt(MovementDirection.West);
+    }
+
+    @Override
+    public int entryCount() {
+        return DIRS.length;
+    }
+
+    @Override
+    public MovementDirection entryDirection(int entry) {
+        return DIRS[entry];
+    }
+
+    @Override
+    public boolean spawn(int entry, int color) {
+        MovementDirection dir = DIRS[entry];
+        int x = layout.spawnX[entry];
+        int y = layout.spawnY[entry];
+        if (!spawnPointClear(x, y, dir)) {
+            return false;
+        }
+        add(Vehicle.spawn(x, y, dir, Vehicle.COLOR_NAMES[color]));
+        return true;
+    }
+
+    @Override
+    public void addRandom() {
+
+        int rand = random.nextInt(4);
+
+        switch (rand) {
+            case 0:
+                addSouth();
+                break;
+            case 1:
+                addNorth();
+                break;
+            case 2:
+                addWest();
+                break;
+            case 3:
+                addEast();
+                break;
+        }
+
+    }
+
+    @Override
+    public int vehicleCount() {
+        return vehicleList.size();
+    }
+
+    @Override
+    public long spawned() {
+        return spawned;
+    }
+
+    @Override
+    public long despawned() {
+        return despawned;
+    }
+
+    @Override
+    public long tick() {
+        return tick;
+    }
+
+    @Override
+    public TrafficSystem.TrafficHub hub() {
+        return hub;
+    }
+
+    @Override
+    public TrafficSystem.Counters counters() {
+        return counters;
+    }
+
+    @Override
+    public long stateHash() {
+        long h = hub.hash();
+        for (Vehicle v : vehicleList) {
+            h = TrafficEngine.hash(h, v.x);
+            h = TrafficEngine.hash(h, v.y);
+            h = TrafficEngine.hash(h, Vehicle.hash(v.dir, v.startDir, v.colorId, v.turned, v.moving));
+        }
+        return h;
+    }
+}
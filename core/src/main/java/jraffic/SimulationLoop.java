@@ -0,0 +1,121 @@
+package jraffic;
+
+import java.io.IOException;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+
+// Runs an engine, or plays back a recording, on its own thread at a fixed tick
+// rate and publishes every tick to a SnapshotBuffer for the UI to draw. The
+// engine is only touched from this thread; other threads submit commands.
+public class SimulationLoop implements Runnable {
+
+    public static final double TICKS_PER_SECOND = 60;
+    // Further behind than this and the loop gives up catching up.
+    private static final long MAX_LAG = TimeUnit.SECONDS.toNanos(1);
+
+    private final TrafficEngine engine;
+    private final TrajectoryReader replay;
+    private final TrajectoryRecorder recorder;
+    public final SnapshotBuffer snapshots = new SnapshotBuffer();
+    private final Queue<Consumer<TrafficEngine>> commands = new ConcurrentLinkedQueue<>();
+    private TrafficDemand demand;
+    private long ticks;
+
+    private volatile double speed = 1;
+    private volatile boolean running = true;
+    private Thread thread;
+
+    // A recorder needs the engine to be a Simulation.
+    public SimulationLoop(TrafficEngine engine, TrajectoryReader replay, TrajectoryRecorder recorder) {
+        this.engine = engine;
+        this.replay = replay;
+        this.recorder = recorder;
+    }
+
+    // Injects arrivals before every tick; set before start().
+    public void setDemand(TrafficDemand demand) {
+        this.demand = demand;
+    }
+
+    public void start() {
+        thread = new Thread(this, "simulation");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    public void stop() {
+        running = false;
+        LockSupport.unpark(thread);
+    }
+
+    // Runs on the simulation thread before its next tick.
+    public void submit(Consumer<TrafficEngine> command) {
+        commands.add(command);
+    }
+
+    public double speed() {
+        return speed;
+    }
+
+    // Multiple of real time, where real time is TICKS_PER_SECOND.
+    public void setSpeed(double speed) {
+        this.speed = speed;
+        LockSupport.unpark(thread);
+    }
+
+    public long tickNanos() {
+        return (long) (1e9 / (TICKS_PER_SECOND * speed));
+    }
+
+    @Override
+    public void run() {
+        long next = System.nanoTime();
+        while (running) {
+            try {
+                tick();
+            } catch (IOException e) {
+                System.err.println("Replay failed: " + e.getMessage());
+                return;
+            }
+            next += tickNanos();
+            long now = System.nanoTime();
+            if (now - next > MAX_LAG) {
+                next = now;
+            }
+            while (running && next - System.nanoTime() > 0) {
+                LockSupport.parkNanos(next - System.nanoTime());
+            }
+        }
+    }
+
+    private void tick() throws IOException {
+        Snapshot back = snapshots.back();
+        if (replay != null) {
+            commands.clear();
+            // Loop the recording.
+            if (!replay.next(back)) {
+                replay.rewind();
+                replay.next(back);
+            }
+        } else {
+            Consumer<TrafficEngine> command;
+            while ((command = commands.poll()) != null) {
+                command.accept(engine);
+            }
+            if (demand != null) {
+                demand.inject(ticks);
+            }
+            engine.update();
+            ticks++;
+            if (recorder != null) {
+                recorder.record((Simulation) engine);
+            }
+            back.capture(engine);
+        }
+        back.nanos = System.nanoTime();
+        snapshots.publish();
+    }
+}
@@ -0,0 +1,202 @@
+package jraffic;
+
+import java.util.Arrays;
+
+// Plain copy of what is needed to draw one tick: the lights and every vehicle in
+// list order. Arrays grow on demand and are reused, so capturing into the same
+// snapshot again does not allocate once it is big enough.
+//
+// A Grid is captured in world coordinates: cell (row, col) is shifted by
+// (col * CELL_WIDTH, row * CELL_HEIGHT) and its ids by cell << CELL_ID_SHIFT, so
+// ids still increase along the snapshot.
+public class Snapshot {
+
+    private static final MovementDirection[] DIRS = MovementDirection.values();
+
+    // Light bits, one per MovementDirection ordinal as in TrafficHub.
+    public static final int NORTH_ON = 1;
+    public static final int SOUTH_ON = 2;
+    public static final int WEST_ON = 4;
+    public static final int EAST_ON = 8;
+
+    public static final int CELL_WIDTH = 800;
+    public static final int CELL_HEIGHT = 700;
+    private static final int CELL_ID_SHIFT = 40;
+
+    public long tick;
+    // Lights of cell 0; cellLights holds every cell of a grid.
+    public int lights;
+    public int rows = 1;
+    public int cols = 1;
+    public byte[] cellLights = new byte[1];
+    public MovementDirection phase;
+    public MovementDirection pendingPhase;
+    // System.nanoTime() when it was published for drawing; not recorded.
+    public long nanos;
+
+    // Queues and intersection occupancy of cell 0 as in TrafficSystem.Counters,
+    // and the engine's vehicle totals; not recorded.
+    public final int[] queues = new int[DIRS.length];
+    public int inIntersection;
+    public int alive;
+    public long spawned;
+    public long despawned;
+
+    public int size;
+    public long[] id = new long[32];
+    public int[] x = new int[32];
+    public int[] y = new int[32];
+    // dir | startDir << 2 | color << 4 | turned << 6 | moving << 7
+    public byte[] state = new byte[32];
+
+    public void capture(TrafficEngine engine) {
+        if (engine instanceof Grid) {
+            capture((Grid) engine);
+        } else {
+            capture((Simulation) engine);
+        }
+        totals(engine);
+    }
+
+    // Lights, phase and totals without any vehicles, which works for every engine
+    // and costs the same however many vehicles there are.
+    public void summarize(TrafficEngine engine) {
+        TrafficSystem.TrafficHub hub = engine.hub();
+        tick = engine.tick();
+        setCells(1, 1);
+        cellLights[0] = lights(hub);
+        lights = cellLights[0];
+        phase = hub.phase;
+        pendingPhase = hub.pendingPhase;
+        size = 0;
+        totals(engine);
+    }
+
+    private void totals(TrafficEngine engine) {
+        TrafficSystem.Counters counters = engine.counters();
+        System.arraycopy(counters.queues, 0, queues, 0, queues.length);
+        inIntersection = counters.inIntersection;
+        alive = engine.vehicleCount();
+        spawned = engine.spawned();
+        despawned = engine.despawned();
+    }
+
+    private static byte lights(TrafficSystem.TrafficHub hub) {
+        return (byte) ((hub.northOn ? NORTH_ON : 0) | (hub.southOn ? SOUTH_ON : 0) | (hub.westOn ? WEST_ON : 0)
+                | (hub.eastOn ? EAST_ON : 0));
+    }
+
+    public void capture(Simulation sim) {
+        tick = sim.tick;
+        setCells(1, 1);
+        size = 0;
+        addCell(sim, 0, 0, 0);
+        lights = cellLights[0];
+        phase = sim.hub.phase;
+        pendingPhase = sim.hub.pendingPhase;
+    }
+
+    public void capture(Grid grid) {
+        tick = grid.tick;
+        setCells(grid.rows, grid.cols);
+        size = 0;
+        for (int i = 0; i < grid.cells.length; i++) {
+            addCell(grid.cells[i], i, i % grid.cols * CELL_WIDTH, i / grid.cols * CELL_HEIGHT);
+        }
+        lights = cellLights[0];
+        phase = grid.cells[0].hub.phase;
+        pendingPhase = grid.cells[0].hub.pendingPhase;
+    }
+
+    private void setCells(int rows, int cols) {
+        this.rows = rows;
+        this.cols = cols;
+        if (cellLights.length < rows * cols) {
+            cellLights = new byte[rows * cols];
+        }
+    }
+
+    private void addCell(Simulation sim, int cell, int offsetX, int offsetY) {
+        cellLights[cell] = lights(sim.hub);
+        ensureCapacity(size + sim.vehicleList.size());
+        long idBase = (long) cell << CELL_ID_SHIFT;
+        for (Vehicle v : sim.vehicleList) {
+            id[size] = idBase + v.id;
+            x[size] = offsetX + v.x;
+            y[size] = offsetY + v.y;
+            state[size] = state(v.dir, v.startDir, v.colorId, v.turned, v.moving);
+            size++;
+        }
+    }
+
+    // After a recording was decoded into lights, which only covers one intersection.
+    public void singleCell() {
+        setCells(1, 1);
+        cellLights[0] = (byte) lights;
+    }
+
+    public void copyFrom(Snapshot other) {
+        tick = other.tick;
+        lights = other.lights;
+        phase = other.phase;
+        pendingPhase = other.pendingPhase;
+        nanos = other.nanos;
+        System.arraycopy(other.queues, 0, queues, 0, queues.length);
+        inIntersection = other.inIntersection;
+        alive = other.alive;
+        spawned = other.spawned;
+        despawned = other.despawned;
+        setCells(other.rows, other.cols);
+        System.arraycopy(other.cellLights, 0, cellLights, 0, rows * cols);
+        ensureCapacity(other.size);
+        size = other.size;
+        System.arraycopy(other.id, 0, id, 0, size);
+        System.arraycopy(other.x, 0, x, 0, size);
+        System.arraycopy(other.y, 0, y, 0, size);
+        System.arraycopy(other.state, 0, state, 0, size);
+    }
+
+    public void ensureCapacity(int n) {
+        if (n > id.length) {
+            int capacity = Math.max(n, id.length * 2);
+            id = Arrays.copyOf(id, capacity);
+            x = Arrays.copyOf(x, capacity);
+            y = Arrays.copyOf(y, capacity);
+            state = Arrays.copyOf(state, capacity);
+        }
+    }
+
+    public static byte state(MovementDirection dir, MovementDirection startDir, int color, boolean turned,
+            boolean moving) {
+        return (byte) (dir.ordinal() | startDir.ordinal() << 2 | color << 4 | (turned ? 64 : 0)
+                | (moving ? 128 : 0));
+    }
+
+    public boolean lightOn(MovementDirection dir) {
+        return (lights & 1 << dir.ordinal()) != 0;
+    }
+
+    public boolean lightOn(int cell, MovementDirection dir) {
+        return (cellLights[cell] & 1 << dir.ordinal()) != 0;
+    }
+
+    public MovementDirection dir(int i) {
+        return DIRS[state[i] & 3];
+    }
+
+    public MovementDirection startDir(int i) {
+        return DIRS[state[i] >> 2 & 3];
+    }
+
+    public int color(int i) {
+        return state[i] >> 4 & 3;
+    }
+
+    public boolean turned(int i) {
+        return (state[i] & 64) != 0;
+    }
+
+    public boolean moving(int i) {
+        return (state[i] & 128) != 0;
+    }
+}
@@ -0,0 +1,36 @@
+package jraffic;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Lock-free triple buffer handing snapshots from one producer to one consumer.
+// The producer fills back() and publishes it; the consumer always reads the most
+// recently published snapshot and never waits. Neither side allocates.
+public class SnapshotBuffer {
+
+    private static final int FRESH = 4;
+
+    private final Snapshot[] buffers = { new Snapshot(), new Snapshot(), new Snapshot() };
+    // Index of the middle buffer, plus FRESH when the producer has published since
+    // the consumer last looked.
+    private final AtomicInteger middle = new AtomicInteger(1);
+    private int back = 0;
+    private int front = 2;
+
+    // Producer side: the snapshot to fill next.
+    public Snapshot back() {
+        return buffers[back];
+    }
+
+    public void publish() {
+        back = middle.getAndSet(back | FRESH) & 3;
+    }
+
+    // Consumer side: swaps in the newest published snapshot if there is one. The
+    // result stays untouched by the producer until the next call.
+    public Snapshot latest() {
+        if ((middle.get() & FRESH) != 0) {
+            front = middle.getAndSet(front) & 3;
+        }
+        return buffers[front];
+    }
+}
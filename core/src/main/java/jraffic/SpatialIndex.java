@@ -0,0 +1,70 @@
+package jraffic;
+
+import java.util.Arrays;
+
+// Uniform bucket grid over a Snapshot, rebuilt by counting sort whenever a new
+// snapshot arrives. Vehicles of bucket b are items[start[b] .. start[b + 1]).
+// Storage is reused across builds.
+public class SpatialIndex {
+
+    public static final int BUCKET = 50;
+    // Vehicles reach this far outside their cell before they despawn.
+    private static final int MARGIN = 50;
+
+    public int cols;
+    public int rows;
+    public int[] start = new int[1];
+    public int[] items = new int[32];
+    private int[] bucketOf = new int[32];
+
+    public void build(Snapshot s) {
+        cols = (s.cols * Snapshot.CELL_WIDTH + 2 * MARGIN) / BUCKET + 1;
+        rows = (s.rows * Snapshot.CELL_HEIGHT + 2 * MARGIN) / BUCKET + 1;
+        int buckets = cols * rows;
+        if (start.length < buckets + 1) {
+            start = new int[buckets + 1];
+        }
+        if (items.length < s.size) {
+            items = new int[Math.max(s.size, items.length * 2)];
+            bucketOf = new int[items.length];
+        }
+        Arrays.fill(start, 0, buckets + 1, 0);
+        for (int i = 0; i < s.size; i++) {
+            int b = column(s.x[i]) + row(s.y[i]) * cols;
+            bucketOf[i] = b;
+            start[b + 1]++;
+        }
+        for (int b = 0; b < buckets; b++) {
+            start[b + 1] += start[b];
+        }
+        // Fill back to front so each bucket keeps snapshot order.
+        for (int i = s.size - 1; i >= 0; i--) {
+            items[--start[bucketOf[i] + 1]] = i;
+        }
+        // Filling left the first item of bucket b in start[b + 1]; shift down.
+        System.arraycopy(start, 1, start, 0, buckets);
+        start[buckets] = s.size;
+    }
+
+    public int column(int worldX) {
+        return Math.max(0, Math.min(cols - 1, (worldX + MARGIN) / BUCKET));
+    }
+
+    public int row(int worldY) {
+        return Math.max(0, Math.min(rows - 1, (worldY + MARGIN) / BUCKET));
+    }
+
+    public int count(int column, int row) {
+        int b = column + row * cols;
+        return start[b + 1] - start[b];
+    }
+
+    // World position of the top-left corner of a bucket.
+    public static int left(int column) {
+        return column * BUCKET - MARGIN;
+    }
+
+    public static int top(int row) {
+        return row * BUCKET - MARGIN;
+    }
+}
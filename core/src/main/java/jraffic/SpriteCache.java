@@ -0,0 +1,155 @@
+package jraffic;
+
+import java.awt.AlphaComposite;
+import java.awt.Graphics2D;
+import java.awt.GraphicsConfiguration;
+import java.awt.GraphicsEnvironment;
+import java.awt.Image;
+import java.awt.RenderingHints;
+import java.awt.Transparency;
+import java.awt.image.BufferedImage;
+import java.awt.image.VolatileImage;
+import java.io.IOException;
+import java.net.URL;
+import java.util.stream.IntStream;
+import javax.imageio.ImageIO;
+
+// Vehicle sprites scaled once to their drawn size and indexed by [color][dir].
+// On a display they are kept as VolatileImages, which the pipeline can hold in
+// video memory and blit without scaling; headless they stay BufferedImages.
+//
+// All twelve come from one atlas shipped next to this class: a row per color
+// in Vehicle.COLOR_NAMES order and a CELL-pixel column per MovementDirection
+// ordinal. It is decoded once and the cells are scaled in parallel. loadAsync()
+// does that on a background thread so the window can open at once; until the
+// sprites are in, sprite() returns null and vehicles are drawn as rectangles.
+public class SpriteCache {
+
+    public static final double SCALE = 1.2;
+    public static final String ATLAS = "sprites.png";
+    public static final int CELL = 100;
+
+    private static final MovementDirection[] DIRS = MovementDirection.values();
+    private static final int COLORS = Vehicle.COLOR_NAMES.length;
+
+    // Published whole once every sprite is scaled; null while loading or if the atlas failed.
+    private volatile BufferedImage[][] scaled;
+    private volatile long loadNanos = -1;
+    private final VolatileImage[][] sprites = new VolatileImage[COLORS][DIRS.length];
+    private final boolean accelerated = !GraphicsEnvironment.isHeadless();
+
+    private SpriteCache() {
+    }
+
+    // Loads the atlas on the calling thread.
+    public static SpriteCache load() {
+        SpriteCache cache = new SpriteCache();
+        cache.fill();
+        return cache;
+    }
+
+    // Returns at once; the sprites appear when a daemon thread has loaded them.
+    public static SpriteCache loadAsync() {
+        SpriteCache cache = new SpriteCache();
+        Thread loader = new Thread(cache::fill, "sprite-loader");
+        loader.setDaemon(true);
+        loader.start();
+        return cache;
+    }
+
+    private void fill() {
+        long start = System.nanoTime();
+        BufferedImage[][] cells = cells();
+        if (cells == null) {
+            return;
+        }
+        BufferedImage[][] out = new BufferedImage[COLORS][DIRS.length];
+        IntStream.range(0, COLORS * DIRS.length).parallel().forEach(k -> {
+            MovementDirection dir = DIRS[k % DIRS.length];
+            out[k / DIRS.length][dir.ordinal()] = scale(cells[k / DIRS.length][dir.ordinal()], width(dir),
+                    height(dir));
+        });
+        loadNanos = System.nanoTime() - start;
+        scaled = out;
+    }
+
+    // The unscaled atlas cells by [color][dir], or null when the atlas is missing or unreadable.
+    public static BufferedImage[][] cells() {
+        URL url = SpriteCache.class.getResource(ATLAS);
+        BufferedImage atlas = null;
+        try {
+            atlas = url != null ? ImageIO.read(url) : null;
+        } catch (IOException e) {
+            System.err.println("Failed to read sprite atlas: " + e.getMessage());
+            return null;
+        }
+        if (atlas == null || atlas.getWidth() < DIRS.length * CELL || atlas.getHeight() < COLORS * CELL) {
+            System.err.println("Missing or undersized sprite atlas " + ATLAS + "; drawing vehicles as rectangles");
+            return null;
+        }
+        BufferedImage[][] cells = new BufferedImage[COLORS][DIRS.length];
+        for (int c = 0; c < COLORS; c++) {
+            for (MovementDirection dir : DIRS) {
+                cells[c][dir.ordinal()] = atlas.getSubimage(dir.ordinal() * CELL, c * CELL, CELL, CELL);
+            }
+        }
+        return cells;
+    }
+
+    public boolean ready() {
+        return scaled != null;
+    }
+
+    // How long decoding and scaling took, or -1 until ready.
+    public long loadNanos() {
+        return loadNanos;
+    }
+
+    public static int width(MovementDirection dir) {
+        return (int) Math.round((vertical(dir) ? 30 : 45) * SCALE);
+    }
+
+    public static int height(MovementDirection dir) {
+        return (int) Math.round((vertical(dir) ? 45 : 30) * SCALE);
+    }
+
+    private static boolean vertical(MovementDirection dir) {
+        return dir == MovementDirection.North || dir == MovementDirection.South;
+    }
+
+    // The sprite ready to draw unscaled, or null until the atlas has loaded.
+    public Image sprite(GraphicsConfiguration gc, int color, MovementDirection dir) {
+        BufferedImage[][] loaded = scaled;
+        if (loaded == null) {
+            return null;
+        }
+        BufferedImage source = loaded[color][dir.ordinal()];
+        if (!accelerated || gc == null) {
+            return source;
+        }
+        VolatileImage sprite = sprites[color][dir.ordinal()];
+        int status = sprite == null ? VolatileImage.IMAGE_INCOMPATIBLE : sprite.validate(gc);
+        if (status == VolatileImage.IMAGE_INCOMPATIBLE) {
+            sprite = gc.createCompatibleVolatileImage(source.getWidth(), source.getHeight(), Transparency.TRANSLUCENT);
+            sprites[color][dir.ordinal()] = sprite;
+            status = VolatileImage.IMAGE_RESTORED;
+        }
+        if (status == VolatileImage.IMAGE_RESTORED) {
+            // Fresh or lost video memory: copy the pixels back in.
+            Graphics2D g = sprite.createGraphics();
+            g.setComposite(AlphaComposite.Src);
+            g.drawImage(source, 0, 0, null);
+            g.dispose();
+        }
+        return sprite;
+    }
+
+    private static BufferedImage scale(BufferedImage img, int width, int height) {
+        BufferedImage out = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB_PRE);
+        Graphics2D g = out.createGraphics();
+        g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BICUBIC);
+        g.drawImage(img, 0, 0, width, height, null);
+        g.dispose();
+        return out;
+    }
+}
@@ -0,0 +1,253 @@
+package jraffic;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+// Streams a running engine's phase changes, queues and throughput over HTTP on
+// the loopback interface, as NDJSON from /telemetry or server-sent events from
+// /events.
+//
+// The simulation thread calls tick() after every update. It pushes phase
+// changes into a lock-free ring and, only when the sampler has asked for one,
+// publishes a vehicle-free Snapshot summary to a SnapshotBuffer; it never locks,
+// waits or sees a subscriber. A sampler thread drains both a few times a
+// second, encodes what it found once as a batch of lines and offers the batch
+// to every subscriber's bounded queue. A subscriber that falls a whole queue
+// behind loses batches rather than holding anyone up, and each one writes its
+// socket on its own pool thread.
+// The build targets Java 17, so those are platform threads from a cached pool;
+// they only ever block on their own queue and socket.
+//
+// Lines are {"event":"phase",...} for every change of phase or pending phase,
+// {"event":"sample",...} per interval with the queues, occupancy, vehicle
+// totals, throughput in vehicles per 1000 ticks and ticks per second since the
+// previous sample, and {"event":"dropped",...} when this subscriber lost batches.
+public class TelemetryServer {
+
+    public static final long DEFAULT_INTERVAL_MILLIS = 250;
+
+    private static final MovementDirection[] DIRS = MovementDirection.values();
+    private static final int EVENTS = 1 << 15;
+    private static final int QUEUE = 64;
+
+    private final HttpServer server;
+    private final ExecutorService pool;
+    private final Thread sampler;
+    private final long intervalMillis;
+    private final SnapshotBuffer samples = new SnapshotBuffer();
+    private final CopyOnWriteArrayList<Subscriber> subscribers = new CopyOnWriteArrayList<>();
+
+    // Phase changes, written by the simulation thread and read by the sampler:
+    // tick << 5 | (pendingPhase + 1) << 2 | phase. Full means dropped.
+    private final AtomicLongArray events = new AtomicLongArray(EVENTS);
+    private final AtomicLong eventHead = new AtomicLong();
+    private final AtomicLong eventTail = new AtomicLong();
+    private final AtomicLong droppedEvents = new AtomicLong();
+
+    // Simulation thread state.
+    private MovementDirection lastPhase;
+    private MovementDirection lastPending;
+    private volatile boolean wanted = true;
+    private volatile boolean running = true;
+
+    // Sampler thread state.
+    private long sampledTick = -1;
+    private long sampledDespawned;
+    private long sampledNanos;
+
+    public TelemetryServer(int port) throws IOException {
+        this(port, DEFAULT_INTERVAL_MILLIS);
+    }
+
+    public TelemetryServer(int port, long intervalMillis) throws IOException {
+        this.intervalMillis = intervalMillis;
+        this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        this.pool = Executors.newCachedThreadPool(r -> {
+            Thread t = new Thread(r, "telemetry-client");
+            t.setDaemon(true);
+            return t;
+        });
+        server.createContext("/telemetry", exchange -> stream(exchange, false));
+        server.createContext("/events", exchange -> stream(exchange, true));
+        server.setExecutor(pool);
+        server.start();
+        this.sampler = new Thread(this::sample, "telemetry-sampler");
+        sampler.setDaemon(true);
+        sampler.start();
+    }
+
+    public int port() {
+        return server.getAddress().getPort();
+    }
+
+    public long droppedEvents() {
+        return droppedEvents.get();
+    }
+
+    // Simulation thread, after every tick. Reads the engine only here.
+    public void tick(TrafficEngine engine) {
+        TrafficSystem.TrafficHub hub = engine.hub();
+        if (hub.phase != lastPhase || hub.pendingPhase != lastPending) {
+            lastPhase = hub.phase;
+            lastPending = hub.pendingPhase;
+            long head = eventHead.get();
+            if (head - eventTail.get() < EVENTS) {
+                int pending = hub.pendingPhase == null ? 0 : hub.pendingPhase.ordinal() + 1;
+                events.lazySet((int) (head & (EVENTS - 1)), engine.tick() << 5 | pending << 2 | hub.phase.ordinal());
+                eventHead.lazySet(head + 1);
+            } else {
+                droppedEvents.lazySet(droppedEvents.get() + 1);
+            }
+        }
+        if (wanted) {
+            wanted = false;
+            Snapshot back = samples.back();
+            back.summarize(engine);
+            back.nanos = System.nanoTime();
+            samples.publish();
+        }
+    }
+
+    public void close() {
+        running = false;
+        sampler.interrupt();
+        server.stop(0);
+        pool.shutdownNow();
+    }
+
+    private void sample() {
+        StringBuilder sb = new StringBuilder();
+        StringBuilder batch = new StringBuilder();
+        while (running) {
+            try {
+                Thread.sleep(intervalMillis);
+            } catch (InterruptedException e) {
+                return;
+            }
+            batch.setLength(0);
+            long head = eventHead.get();
+            for (long i = eventTail.get(); i < head; i++) {
+                long event = events.get((int) (i & (EVENTS - 1)));
+                int pending = (int) (event >> 2 & 7);
+                batch.append("{\"event\":\"phase\",\"tick\":").append(event >>> 5);
+                batch.append(",\"phase\":\"").append(DIRS[(int) (event & 3)]).append('"');
+                batch.append(",\"pending\":").append(pending == 0 ? "null" : "\"" + DIRS[pending - 1] + "\"");
+                batch.append("}\n");
+            }
+            eventTail.lazySet(head);
+
+            Snapshot s = samples.latest();
+            if (s.tick != sampledTick) {
+                batch.append(encode(sb, s)).append('\n');
+                sampledTick = s.tick;
+                sampledDespawned = s.despawned;
+                sampledNanos = s.nanos;
+            }
+            wanted = true;
+
+            if (batch.length() > 0) {
+                String lines = batch.toString();
+                for (Subscriber subscriber : subscribers) {
+                    if (!subscriber.batches.offer(lines)) {
+                        subscriber.dropped.incrementAndGet();
+                    }
+                }
+            }
+        }
+    }
+
+    private String encode(StringBuilder sb, Snapshot s) {
+        sb.setLength(0);
+        sb.append("{\"event\":\"sample\",\"tick\":").append(s.tick);
+        sb.append(",\"phase\":\"").append(s.phase).append('"');
+        sb.append(",\"pending\":").append(s.pendingPhase == null ? "null" : "\"" + s.pendingPhase + "\"");
+        sb.append(",\"green\":[");
+        boolean first = true;
+        for (MovementDirection dir : DIRS) {
+            if (s.lightOn(dir)) {
+                sb.append(first ? "" : ",").append('"').append(dir).append('"');
+                first = false;
+            }
+        }
+        sb.append("],\"queues\":{");
+        for (MovementDirection dir : DIRS) {
+            sb.append(dir.ordinal() > 0 ? "," : "").append('"').append(dir).append("\":")
+                    .append(s.queues[dir.ordinal()]);
+        }
+        sb.append("},\"inIntersection\":").append(s.inIntersection);
+        sb.append(",\"alive\":").append(s.alive);
+        sb.append(",\"spawned\":").append(s.spawned);
+        sb.append(",\"despawned\":").append(s.despawned);
+        if (sampledTick >= 0 && s.tick > sampledTick) {
+            long ticks = s.tick - sampledTick;
+            sb.append(",\"throughput\":").append(String.format(Locale.ROOT, "%.3f",
+                    1000.0 * (s.despawned - sampledDespawned) / ticks));
+            sb.append(",\"ticksPerSecond\":").append(String.format(Locale.ROOT, "%.0f",
+                    ticks * 1e9 / Math.max(1, s.nanos - sampledNanos)));
+        }
+        sb.append(",\"droppedEvents\":").append(droppedEvents.get());
+        return sb.append('}').toString();
+    }
+
+    private void stream(HttpExchange exchange, boolean sse) throws IOException {
+        Subscriber subscriber = new Subscriber();
+        exchange.getResponseHeaders().set("Content-Type", sse ? "text/event-stream" : "application/x-ndjson");
+        exchange.getResponseHeaders().set("Cache-Control", "no-cache");
+        exchange.sendResponseHeaders(200, 0);
+        subscribers.add(subscriber);
+        try (OutputStream out = exchange.getResponseBody()) {
+            long reported = 0;
+            while (running) {
+                long dropped = subscriber.dropped.get();
+                if (dropped > reported) {
+                    reported = dropped;
+                    write(out, sse, "{\"event\":\"dropped\",\"batches\":" + dropped + "}\n");
+                }
+                String lines = subscriber.batches.poll(intervalMillis * 4, TimeUnit.MILLISECONDS);
+                if (lines != null) {
+                    write(out, sse, lines);
+                } else {
+                    // Keeps idle connections open and notices clients that left.
+                    out.write((sse ? ":\n\n" : "\n").getBytes(StandardCharsets.UTF_8));
+                }
+                out.flush();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException e) {
+            // The client went away.
+        } finally {
+            subscribers.remove(subscriber);
+            exchange.close();
+        }
+    }
+
+    // Newline-terminated lines, framed as one event each for SSE.
+    private static void write(OutputStream out, boolean sse, String lines) throws IOException {
+        if (sse) {
+            lines = "data: " + lines.replace("\n", "\n\ndata: ");
+            lines = lines.substring(0, lines.length() - "data: ".length());
+        }
+        out.write(lines.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static class Subscriber {
+
+        final ArrayBlockingQueue<String> batches = new ArrayBlockingQueue<>(QUEUE);
+        final AtomicLong dropped = new AtomicLong();
+    }
+}
@@ -0,0 +1,134 @@
+package jraffic;
+
+// Tuning of the signal controllers and car following. The defaults are the
+// constants the simulation always ran with; an engine reads its config on every
+// tick, so change it before the run starts, not during one.
+public class TrafficConfig {
+
+    // Names accepted by get, set and parse, in CSV column order.
+    public static final String[] NAMES = { "phaseDuration", "maxGreen", "maxExtra", "overflowExtra",
+            "priorityExtra", "vehicleLength", "safetyGap", "allRed", "clearanceTimeout", "safeDistance" };
+
+    // Adaptive green: phaseDuration plus priorityExtra times the served queue over
+    // its capacity, or overflowExtra per vehicle over capacity (at most maxExtra)
+    // once an approach is full, never more than maxGreen.
+    public int phaseDuration = 100;
+    public int maxGreen = 938;
+    public int maxExtra = 400;
+    public int overflowExtra = 50;
+    public int priorityExtra = 200;
+    // Approach capacity is lane length / (vehicleLength + safetyGap).
+    public int vehicleLength = 45;
+    public int safetyGap = 50;
+    // All-red ticks before a pending phase; after that it waits for an empty
+    // intersection for no longer than clearanceTimeout.
+    public int allRed = 90;
+    public int clearanceTimeout = 60;
+    // A vehicle waits when its leader is this close ahead.
+    public int safeDistance = Vehicle.SAFE_DISTANCE;
+
+    public int capacity(int laneLength) {
+        return laneLength / (vehicleLength + safetyGap);
+    }
+
+    public int get(String name) {
+        switch (name) {
+            case "phaseDuration":
+                return phaseDuration;
+            case "maxGreen":
+                return maxGreen;
+            case "maxExtra":
+                return maxExtra;
+            case "overflowExtra":
+                return overflowExtra;
+            case "priorityExtra":
+                return priorityExtra;
+            case "vehicleLength":
+                return vehicleLength;
+            case "safetyGap":
+                return safetyGap;
+            case "allRed":
+                return allRed;
+            case "clearanceTimeout":
+                return clearanceTimeout;
+            case "safeDistance":
+                return safeDistance;
+            default:
+                throw new IllegalArgumentException("Unknown parameter: " + name);
+        }
+    }
+
+    // Lengths and gaps divide approach capacity and space vehicles, so they must
+    // be positive; timings must not be negative.
+    public void set(String name, int value) {
+        get(name);
+        boolean length = name.equals("vehicleLength") || name.equals("safetyGap") || name.equals("safeDistance");
+        if (length ? value <= 0 : value < 0) {
+            throw new IllegalArgumentException(name + " must be " + (length ? "positive" : "non-negative") + ": "
+                    + value);
+        }
+        switch (name) {
+            case "phaseDuration":
+                phaseDuration = value;
+                break;
+            case "maxGreen":
+                maxGreen = value;
+                break;
+            case "maxExtra":
+                maxExtra = value;
+                break;
+            case "overflowExtra":
+                overflowExtra = value;
+                break;
+            case "priorityExtra":
+                priorityExtra = value;
+                break;
+            case "vehicleLength":
+                vehicleLength = value;
+                break;
+            case "safetyGap":
+                safetyGap = value;
+                break;
+            case "allRed":
+                allRed = value;
+                break;
+            case "clearanceTimeout":
+                clearanceTimeout = value;
+                break;
+            case "safeDistance":
+                safeDistance = value;
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown parameter: " + name);
+        }
+    }
+
+    // Applies "name=value,name=value" on top of the current values.
+    public TrafficConfig parse(String spec) {
+        for (String pair : spec.split(",")) {
+            String[] kv = pair.split("=");
+            if (kv.length != 2) {
+                throw new IllegalArgumentException("Expected name=value: " + pair);
+            }
+            set(kv[0].trim(), Integer.parseInt(kv[1].trim()));
+        }
+        return this;
+    }
+
+    public TrafficConfig copy() {
+        TrafficConfig c = new TrafficConfig();
+        for (String name : NAMES) {
+            c.set(name, get(name));
+        }
+        return c;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        for (String name : NAMES) {
+            sb.append(sb.length() > 0 ? "," : "").append(name).append('=').append(get(name));
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,270 @@
+package jraffic;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+// Poisson arrivals at every entry point of an engine. Rates are in vehicles per
+// tick and keyed by the direction of travel of the approach. A time-varying
+// profile scales them: gaps are drawn at the peak rate and an arrival at time t
+// is kept with probability factor(t) / peak, which thins the stream into a
+// non-homogeneous Poisson process. Arrivals queue per entry until the spawn
+// point is clear, so saturated demand piles up, up to Backlog.DEFAULT_LIMIT per
+// entry; past that they are dropped and counted. The draws go on either way, so
+// a run repeats whatever the limit.
+public class TrafficDemand {
+
+    private static final MovementDirection[] DIRS = MovementDirection.values();
+
+    private final TrafficEngine engine;
+    private final SeededRandom[] randoms;
+    private final double[] nextArrival;
+    private final Backlog backlog;
+
+    public final double[] rates = new double[DIRS.length];
+    // Per color; in the default layout Blue drives straight and Yellow and Brown turn.
+    public final double[] routeWeights = { 1, 1, 1 };
+
+    private long[] profileTicks = { 0 };
+    private double[] profileFactors = { 1 };
+    private long profilePeriod;
+    private double peak = 1;
+
+    public long generated;
+    public long injected;
+    // Arrivals that found their entry's backlog full.
+    public long dropped;
+
+    public TrafficDemand(TrafficEngine engine, SeededRandom random) {
+        this.engine = engine;
+        int entries = engine.entryCount();
+        this.randoms = new SeededRandom[entries];
+        this.nextArrival = new double[entries];
+        for (int e = 0; e < entries; e++) {
+            randoms[e] = random.split();
+            nextArrival[e] = Double.NaN;
+        }
+        this.backlog = new Backlog(entries, Backlog.DEFAULT_LIMIT);
+    }
+
+    public void setRate(MovementDirection approach, double vehiclesPerTick) {
+        rates[approach.ordinal()] = vehiclesPerTick;
+    }
+
+    // Piecewise-linear factor over ticks, held flat outside the given points and
+    // repeated every period ticks when period is positive.
+    public void setProfile(long[] ticks, double[] factors, long period) {
+        if (ticks.length == 0 || ticks.length != factors.length) {
+            throw new IllegalArgumentException("Profile needs matching, non-empty tick and factor lists");
+        }
+        double max = 0;
+        for (int i = 0; i < ticks.length; i++) {
+            if (i > 0 && ticks[i] <= ticks[i - 1]) {
+                throw new IllegalArgumentException("Profile ticks must increase");
+            }
+            if (factors[i] < 0) {
+                throw new IllegalArgumentException("Profile factors must not be negative");
+            }
+            max = Math.max(max, factors[i]);
+        }
+        this.profileTicks = ticks.clone();
+        this.profileFactors = factors.clone();
+        this.profilePeriod = period;
+        this.peak = max;
+    }
+
+    public double factor(double tick) {
+        if (profilePeriod > 0) {
+            tick %= profilePeriod;
+        }
+        if (tick <= profileTicks[0]) {
+            return profileFactors[0];
+        }
+        for (int i = 1; i < profileTicks.length; i++) {
+            if (tick <= profileTicks[i]) {
+                double f = (tick - profileTicks[i - 1]) / (profileTicks[i] - profileTicks[i - 1]);
+                return profileFactors[i - 1] + f * (profileFactors[i] - profileFactors[i - 1]);
+            }
+        }
+        return profileFactors[profileTicks.length - 1];
+    }
+
+    // Generates the arrivals falling in [tick, tick + 1) and spawns whatever the
+    // entry points can take right now.
+    public void inject(long tick) {
+        for (int e = 0; e < randoms.length; e++) {
+            generate(e, tick);
+            while (!backlog.isEmpty(e) && engine.spawn(e, backlog.peek(e))) {
+                backlog.remove(e);
+                injected++;
+            }
+        }
+    }
+
+    // The first tick from tick on where inject has anything to draw or spawn,
+    // so an engine that jumps over quiet stretches can skip the calls between.
+    public long nextInjection(long tick) {
+        long next = Long.MAX_VALUE;
+        for (int e = 0; e < randoms.length; e++) {
+            if (!backlog.isEmpty(e)) {
+                return tick;
+            }
+            if (rates[engine.entryDirection(e).ordinal()] * peak <= 0) {
+                continue;
+            }
+            if (Double.isNaN(nextArrival[e])) {
+                return tick;
+            }
+            next = Math.min(next, Math.max(tick, (long) Math.floor(nextArrival[e])));
+        }
+        return next;
+    }
+
+    private void generate(int e, long tick) {
+        double rate = rates[engine.entryDirection(e).ordinal()] * peak;
+        if (rate <= 0) {
+            return;
+        }
+        SeededRandom random = randoms[e];
+        if (Double.isNaN(nextArrival[e])) {
+            nextArrival[e] = tick + gap(random, rate);
+        }
+        while (nextArrival[e] < tick + 1) {
+            if (random.nextDouble() * peak < factor(nextArrival[e])) {
+                if (!backlog.add(e, route(random))) {
+                    dropped++;
+                }
+                generated++;
+            }
+            nextArrival[e] += gap(random, rate);
+        }
+    }
+
+    private static double gap(SeededRandom random, double rate) {
+        return -Math.log(1 - random.nextDouble()) / rate;
+    }
+
+    private int route(SeededRandom random) {
+        double total = 0;
+        for (double w : routeWeights) {
+            total += w;
+        }
+        double pick = random.nextDouble() * total;
+        for (int i = 0; i < routeWeights.length - 1; i++) {
+            pick -= routeWeights[i];
+            if (pick < 0) {
+                return i;
+            }
+        }
+        return routeWeights.length - 1;
+    }
+
+    // Arrivals waiting over all entries, and the most there ever were at once.
+    public int backlog() {
+        return backlog.total();
+    }
+
+    public int maxBacklog() {
+        return backlog.peak();
+    }
+
+    // New arrival streams split from random, as the constructor derives them.
+    // Backlogs and the arrivals already drawn stay; the draws after them change.
+    public void reseed(SeededRandom random) {
+        for (SeededRandom r : randoms) {
+            SeededRandom fresh = random.split();
+            r.set(fresh.state(), fresh.gamma());
+        }
+    }
+
+    // Checkpoint state: the streams, next arrivals, backlogs and totals. Rates,
+    // routes and the profile are settings and stay with the caller.
+    int stateBytes() {
+        return 32 + randoms.length * 28 + backlog();
+    }
+
+    void save(ByteBuffer out) {
+        out.putLong(generated).putLong(injected).putLong(dropped).putInt(maxBacklog()).putInt(randoms.length);
+        for (int e = 0; e < randoms.length; e++) {
+            out.putLong(randoms[e].state()).putLong(randoms[e].gamma()).putDouble(nextArrival[e]);
+            out.putInt(backlog.size(e));
+            for (int i = 0; i < backlog.size(e); i++) {
+                out.put((byte) backlog.get(e, i));
+            }
+        }
+    }
+
+    void restore(ByteBuffer in) {
+        generated = in.getLong();
+        injected = in.getLong();
+        dropped = in.getLong();
+        int peak = in.getInt();
+        if (in.getInt() != randoms.length) {
+            throw new IllegalArgumentException("Checkpoint demand has a different number of entries");
+        }
+        for (int e = 0; e < randoms.length; e++) {
+            randoms[e].set(in.getLong(), in.getLong());
+            nextArrival[e] = in.getDouble();
+            backlog.clear(e);
+            for (int n = in.getInt(); n > 0; n--) {
+                if (!backlog.add(e, in.get())) {
+                    dropped++;
+                }
+            }
+        }
+        backlog.setPeak(peak);
+    }
+
+    // "0.02" for every approach, or "north=0.02,east=0.01" per direction of travel.
+    public void parseRates(String spec) {
+        if (!spec.contains("=")) {
+            Arrays.fill(rates, Double.parseDouble(spec));
+            return;
+        }
+        for (String part : spec.split(",")) {
+            String[] kv = part.split("=");
+            if (kv.length != 2) {
+                throw new IllegalArgumentException("Bad rate: " + part);
+            }
+            setRate(direction(kv[0].trim()), Double.parseDouble(kv[1]));
+        }
+    }
+
+    // "blue,yellow,brown" relative weights, e.g. "2,1,1".
+    public void parseRoutes(String spec) {
+        String[] parts = spec.split(",");
+        if (parts.length != routeWeights.length) {
+            throw new IllegalArgumentException("Route mix needs " + routeWeights.length + " weights: " + spec);
+        }
+        for (int i = 0; i < parts.length; i++) {
+            routeWeights[i] = Double.parseDouble(parts[i]);
+            if (routeWeights[i] < 0) {
+                throw new IllegalArgumentException("Route weights must not be negative: " + spec);
+            }
+        }
+    }
+
+    // "tick:factor,tick:factor,...", e.g. "0:0.5,18000:1.5,36000:0.5".
+    public void parseProfile(String spec, long period) {
+        String[] parts = spec.split(",");
+        long[] ticks = new long[parts.length];
+        double[] factors = new double[parts.length];
+        for (int i = 0; i < parts.length; i++) {
+            String[] kv = parts[i].split(":");
+            if (kv.length != 2) {
+                throw new IllegalArgumentException("Bad profile point: " + parts[i]);
+            }
+            ticks[i] = Long.parseLong(kv[0]);
+            factors[i] = Double.parseDouble(kv[1]);
+        }
+        setProfile(ticks, factors, period);
+    }
+
+    private static MovementDirection direction(String name) {
+        for (MovementDirection dir : DIRS) {
+            if (dir.name().equalsIgnoreCase(name)) {
+                return dir;
+            }
+        }
+        throw new IllegalArgumentException("Unknown direction: " + name);
+    }
+}
@@ -0,0 +1,37 @@
+package jraffic;
+
+public interface TrafficEngine {
+
+    void update();
+
+    void addRandom();
+
+    // Entry points are the roads where traffic enters the engine from outside.
+    int entryCount();
+
+    MovementDirection entryDirection(int entry);
+
+    // Spawns a vehicle of the given color id at an entry point, ignoring the
+    // interactive vehicle cap. Fails only while the spawn point is occupied.
+    boolean spawn(int entry, int color);
+
+    int vehicleCount();
+
+    long spawned();
+
+    long despawned();
+
+    long tick();
+
+    // The intersection whose lights and queues telemetry reports: cell 0 of a grid.
+    TrafficSystem.TrafficHub hub();
+
+    TrafficSystem.Counters counters();
+
+    // Digest of the full engine state, for comparing runs tick by tick.
+    long stateHash();
+
+    static long hash(long h, long value) {
+        return SeededRandom.mix64(h * 31 + value);
+    }
+}
@@ -0,0 +1,391 @@
+package jraffic;
+
+import java.util.List;
+
+public class TrafficSystem {
+
+    // Used by the overloads that take no config.
+    private static final TrafficConfig DEFAULTS = new TrafficConfig();
+
+    // The overloads without a layout use Layout.DEFAULT.
+    public static boolean inIntersection(int x, int y) {
+        return Layout.DEFAULT.inIntersection(x, y);
+    }
+
+    public static int queueOf(MovementDirection startDir, boolean turned, int x, int y) {
+        return Layout.DEFAULT.queueOf(startDir, turned, x, y);
+    }
+
+    // Queue lengths per approach (indexed by startDir) and intersection occupancy,
+    // kept current by the movement phase so the controller never scans vehicles.
+    public static class Counters {
+
+        public final Layout layout;
+        public final int[] queues = new int[MovementDirection.values().length];
+        public int inIntersection;
+
+        public Counters() {
+            this(Layout.DEFAULT);
+        }
+
+        public Counters(Layout layout) {
+            this.layout = layout;
+        }
+
+        public void track(MovementDirection startDir, boolean turned, int x, int y, int delta) {
+            int queue = layout.queueOf(startDir, turned, x, y);
+            if (queue >= 0) {
+                queues[queue] += delta;
+            }
+            if (layout.inIntersection(x, y)) {
+                inIntersection += delta;
+            }
+        }
+
+        public void add(Vehicle v) {
+            track(v.startDir, v.turned, v.x, v.y, 1);
+        }
+
+        public void remove(Vehicle v) {
+            track(v.startDir, v.turned, v.x, v.y, -1);
+        }
+
+        public void clear() {
+            java.util.Arrays.fill(queues, 0);
+            inIntersection = 0;
+        }
+    }
+
+    public static class TrafficHub {
+
+        public boolean northOn;
+        public boolean southOn;
+        public boolean eastOn;
+        public boolean westOn;
+        
+        public MovementDirection phase;
+        public int timer;
+        public int phaseDuration;
+        public MovementDirection pendingPhase;
+        public int pendingTimer;
+
+        public TrafficHub() {
+            reset();
+        }
+
+        public long hash() {
+            long h = TrafficEngine.hash(0, phase.ordinal());
+            h = TrafficEngine.hash(h, pendingPhase == null ? -1 : pendingPhase.ordinal());
+            h = TrafficEngine.hash(h, timer);
+            h = TrafficEngine.hash(h, phaseDuration);
+            h = TrafficEngine.hash(h, pendingTimer);
+            return TrafficEngine.hash(h, (northOn ? 1 : 0) | (southOn ? 2 : 0) | (westOn ? 4 : 0) | (eastOn ? 8 : 0));
+        }
+
+        public void reset() {
+            this.northOn = false;
+            this.southOn = false;
+            this.eastOn = true;
+            this.westOn = false;
+            this.phase = MovementDirection.East;
+            this.timer = 0;
+            this.phaseDuration = DEFAULTS.phaseDuration;
+            this.pendingPhase = null;
+            this.pendingTimer = 0;
+        }
+        
+    }
+
+    public static boolean atRedLight(TrafficHub hub, MovementDirection dir, int x, int y) {
+        return atRedLight(Layout.DEFAULT, hub, dir, x, y);
+    }
+
+    public static boolean atRedLight(Layout layout, TrafficHub hub, MovementDirection dir, int x, int y) {
+        return !green(hub, dir) && layout.atStopLine(dir, x, y);
+    }
+
+    // Whether the lights let traffic driving dir through: the West light serves
+    // eastbound traffic and the East light westbound.
+    public static boolean green(TrafficHub hub, MovementDirection dir) {
+        switch (dir) {
+            case North:
+                return hub.northOn;
+            case South:
+                return hub.southOn;
+            case East:
+                return hub.westOn;
+            default:
+                return hub.eastOn;
+        }
+    }
+
+    // Where the lights can hold a vehicle, whatever they show.
+    public static boolean atStopLine(MovementDirection dir, int x, int y) {
+        return Layout.DEFAULT.atStopLine(dir, x, y);
+    }
+
+    public static void checkLights(Vehicle vehicle, TrafficHub hub) {
+        checkLights(Layout.DEFAULT, vehicle, hub);
+    }
+
+    public static void checkLights(Layout layout, Vehicle vehicle, TrafficHub hub) {
+
+        vehicle.moving = !atRedLight(layout, hub, vehicle.dir, vehicle.x, vehicle.y);
+
+    }
+
+    public static void updateLights(TrafficHub hub, List<Vehicle> vehicles) {
+        Counters counters = new Counters();
+        for (Vehicle vehicle : vehicles) {
+            counters.add(vehicle);
+        }
+        updateLights(hub, counters);
+    }
+
+    public static void updateLights(TrafficHub hub, Counters counters) {
+        updateLights(DEFAULTS, hub, counters);
+    }
+
+    public static void updateLights(TrafficConfig config, TrafficHub hub, Counters counters) {
+        int[] q = counters.queues;
+        updateLights(config, counters.layout, hub, q[MovementDirection.North.ordinal()], q[MovementDirection.South.ordinal()],
+                q[MovementDirection.East.ordinal()], q[MovementDirection.West.ordinal()],
+                counters.inIntersection == 0);
+    }
+
+    public static void updateLights(TrafficHub hub, int qNorth, int qSouth, int qFromWest, int qFromEast,
+            boolean intersectionClear) {
+        updateLights(DEFAULTS, Layout.DEFAULT, hub, qNorth, qSouth, qFromWest, qFromEast, intersectionClear);
+    }
+
+    public static void updateLights(TrafficConfig config, Layout layout, TrafficHub hub, int qNorth, int qSouth,
+            int qFromWest, int qFromEast, boolean intersectionClear) {
+
+        int[] length = layout.laneLength;
+        int capNorth = config.capacity(length[MovementDirection.North.ordinal()]);
+        int capSouth = config.capacity(length[MovementDirection.South.ordinal()]);
+        int capFromWest = config.capacity(length[MovementDirection.East.ordinal()]);
+        int capFromEast = config.capacity(length[MovementDirection.West.ordinal()]);
+
+        double pNorth = capNorth > 0 ? (double) qNorth / capNorth : 0;
+        double pSouth = capSouth > 0 ? (double) qSouth / capSouth : 0;
+        double pFromWest = capFromWest > 0 ? (double) qFromWest / capFromWest : 0;
+        double pFromEast = capFromEast > 0 ? (double) qFromEast / capFromEast : 0;
+
+        double priorityForPhaseNorth = pNorth;
+        double priorityForPhaseSouth = pSouth;
+        double priorityForPhaseWest = pFromWest;
+        double priorityForPhaseEast = pFromEast;
+
+        hub.phaseDuration = greenTime(config, layout, hub.phase, qNorth, qSouth, qFromWest, qFromEast);
+
+        hub.timer += 1;
+
+        if (hub.timer >= hub.phaseDuration) {
+
+            hub.timer = 0;
+            double highest = 0;
+            MovementDirection newPhase = hub.phase;
+            if (priorityForPhaseNorth > highest) {
+                highest = priorityForPhaseNorth;
+                newPhase = MovementDirection.North;
+            }
+            if (priorityForPhaseSouth > highest) {
+                highest = priorityForPhaseSouth;
+                newPhase = MovementDirection.South;
+            }
+            if (priorityForPhaseEast > highest) {
+                highest = priorityForPhaseEast;
+                newPhase = MovementDirection.East;
+            }
+            if (priorityForPhaseWest > highest) {
+                highest = priorityForPhaseWest;
+                newPhase = MovementDirection.West;
+            }
+
+            if (highest == 0) {
+                newPhase = nextPhase(hub.phase);
+            }
+
+            requestPhase(hub, newPhase, intersectionClear);
+        }
+
+        settle(config, hub, intersectionClear);
+    }
+
+    // Green time of phase for these queues: it stretches with the queue the
+    // phase serves, and with the overflow once that queue is at capacity.
+    public static int greenTime(TrafficConfig config, MovementDirection phase, int qNorth, int qSouth, int qFromWest,
+            int qFromEast) {
+        return greenTime(config, Layout.DEFAULT, phase, qNorth, qSouth, qFromWest, qFromEast);
+    }
+
+    public static int greenTime(TrafficConfig config, Layout layout, MovementDirection phase, int qNorth, int qSouth,
+            int qFromWest, int qFromEast) {
+
+        int[] length = layout.laneLength;
+        int capNorth = config.capacity(length[MovementDirection.North.ordinal()]);
+        int capSouth = config.capacity(length[MovementDirection.South.ordinal()]);
+        int capFromWest = config.capacity(length[MovementDirection.East.ordinal()]);
+        int capFromEast = config.capacity(length[MovementDirection.West.ordinal()]);
+
+        double pNorth = capNorth > 0 ? (double) qNorth / capNorth : 0;
+        double pSouth = capSouth > 0 ? (double) qSouth / capSouth : 0;
+        double pFromWest = capFromWest > 0 ? (double) qFromWest / capFromWest : 0;
+        double pFromEast = capFromEast > 0 ? (double) qFromEast / capFromEast : 0;
+
+        double currentPriority = 0;
+
+        switch (phase) {
+            case North:
+                currentPriority = pNorth;
+                break;
+            case South:
+                currentPriority = pSouth;
+                break;
+            case West:
+                currentPriority = pFromWest;
+                break;
+            case East:
+                currentPriority = pFromEast;
+                break;
+        }
+
+        int base = config.phaseDuration;
+        int maxExtra = config.maxExtra;
+        boolean atCapacity = false;
+        int duration;
+
+        switch (phase) {
+            case North:
+                atCapacity = qNorth >= capNorth && capNorth > 0;
+                break;
+            case South:
+                atCapacity = qSouth >= capSouth && capSouth > 0;
+                break;
+            case West:
+                atCapacity = qFromWest >= capFromWest && capFromWest > 0;
+                break;
+            case East:
+                atCapacity = qFromEast >= capFromEast && capFromEast > 0;
+                break;
+        }
+
+        if (atCapacity) {
+            int overflow = Math.max(Math.max(qNorth - capNorth, qSouth - capSouth),
+                    Math.max(qFromWest - capFromWest, qFromEast - capFromEast));
+            duration = Math.min(base + maxExtra, base + config.overflowExtra * Math.max(1, overflow));
+        } else {
+            duration = base + (int) (currentPriority * config.priorityExtra);
+        }
+
+        return Math.min(duration, config.maxGreen);
+    }
+
+    public static int greenTime(TrafficConfig config, MovementDirection phase, Counters counters) {
+        int[] q = counters.queues;
+        return greenTime(config, counters.layout, phase, q[MovementDirection.North.ordinal()], q[MovementDirection.South.ordinal()],
+                q[MovementDirection.East.ordinal()], q[MovementDirection.West.ordinal()]);
+    }
+
+    // Phases rotate East, North, West, South.
+    public static MovementDirection nextPhase(MovementDirection phase) {
+        switch (phase) {
+            case East:
+                return MovementDirection.North;
+            case North:
+                return MovementDirection.West;
+            case West:
+                return MovementDirection.South;
+            default:
+                return MovementDirection.East;
+        }
+    }
+
+    // The queue a green phase releases: West lets eastbound traffic through, East westbound.
+    public static int servedQueue(Counters counters, MovementDirection phase) {
+        switch (phase) {
+            case West:
+                return counters.queues[MovementDirection.East.ordinal()];
+            case East:
+                return counters.queues[MovementDirection.West.ordinal()];
+            default:
+                return counters.queues[phase.ordinal()];
+        }
+    }
+
+    // Moves to newPhase: at once when the intersection is empty, otherwise
+    // through the all-red window run by settle().
+    public static void requestPhase(TrafficHub hub, MovementDirection newPhase, boolean intersectionClear) {
+        if (newPhase != hub.phase) {
+            if (intersectionClear) {
+                hub.phase = newPhase;
+                hub.pendingPhase = null;
+            } else {
+                hub.pendingPhase = newPhase;
+            }
+        }
+    }
+
+    // How many more settle() calls keep the lights as they are: all of them
+    // without a pending phase, otherwise those left in the all-red window.
+    public static long settleQuietTicks(TrafficConfig config, TrafficHub hub) {
+        if (hub.pendingPhase == null) {
+            return Long.MAX_VALUE;
+        }
+        return Math.max(0, config.allRed - hub.pendingTimer);
+    }
+
+    // Applies that many quiet settle() calls at once.
+    public static void skipSettle(TrafficHub hub, long ticks) {
+        if (hub.pendingPhase != null) {
+            hub.pendingTimer += (int) ticks;
+        }
+    }
+
+    // Runs a pending all-red window, then shows green for the current phase only.
+    public static void settle(TrafficHub hub, boolean intersectionClear) {
+        settle(DEFAULTS, hub, intersectionClear);
+    }
+
+    public static void settle(TrafficConfig config, TrafficHub hub, boolean intersectionClear) {
+
+        if (hub.pendingPhase != null) {
+            hub.pendingTimer += 1;
+            if (hub.pendingTimer <= config.allRed) { // 1 second red light phase
+                hub.northOn = false;
+                hub.southOn = false;
+                hub.eastOn = false;
+                hub.westOn = false;
+                return; // Keep all lights red during this phase
+            }
+            if (intersectionClear || hub.pendingTimer > config.clearanceTimeout) {
+                hub.phase = hub.pendingPhase;
+                hub.pendingPhase = null;
+                hub.pendingTimer = 0;
+            }
+        } else {
+            hub.pendingTimer = 0;
+        }
+
+        hub.northOn = false;
+        hub.southOn = false;
+        hub.eastOn = false;
+        hub.westOn = false;
+
+        switch (hub.phase) {
+            case North:
+                hub.northOn = true;
+                break;
+            case South:
+                hub.southOn = true;
+                break;
+            case West:
+                hub.westOn = true;
+                break;
+            case East:
+                hub.eastOn = true;
+                break;
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,130 @@
+package jraffic;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+// Streams a TrajectoryRecorder log back one tick at a time.
+public class TrajectoryReader implements Closeable {
+
+    private static final MovementDirection[] DIRS = MovementDirection.values();
+    private static final int HEADER = 5;
+
+    private final FileChannel channel;
+    private ByteBuffer in = ByteBuffer.allocateDirect(1 << 20);
+    private final Snapshot previous = new Snapshot();
+
+    public TrajectoryReader(Path path) throws IOException {
+        this.channel = FileChannel.open(path, StandardOpenOption.READ);
+        rewind();
+    }
+
+    // Goes back to the first tick.
+    public void rewind() throws IOException {
+        channel.position(0);
+        in.clear().flip();
+        previous.tick = 0;
+        previous.size = 0;
+        if (!fill(HEADER) || in.getInt() != TrajectoryRecorder.MAGIC) {
+            throw new IOException("Not a trajectory file");
+        }
+        int version = in.get();
+        if (version != TrajectoryRecorder.VERSION) {
+            throw new IOException("Unsupported trajectory version " + version);
+        }
+    }
+
+    // Decodes the next tick into the given snapshot; false at the end of the file.
+    public boolean next(Snapshot into) throws IOException {
+        if (!fill(1)) {
+            return false;
+        }
+        fill(5);
+        int length = (int) getVarint(in);
+        if (!fill(length)) {
+            throw new EOFException("Truncated trajectory frame");
+        }
+        int end = in.position() + length;
+
+        Snapshot p = previous;
+        into.tick = p.tick + getVarint(in);
+        int header = in.get();
+        into.lights = header & 15;
+        into.singleCell();
+        into.phase = DIRS[header >> 4 & 3];
+        into.pendingPhase = (header & 64) != 0 ? DIRS[in.get()] : null;
+        int size = (int) getVarint(in);
+        into.ensureCapacity(size);
+        into.size = size;
+        long lastId = -1;
+        int j = 0;
+        for (int i = 0; i < size; i++) {
+            long id = lastId + getVarint(in);
+            lastId = id;
+            into.id[i] = id;
+            into.state[i] = in.get();
+            while (j < p.size && p.id[j] < id) {
+                j++;
+            }
+            if (j < p.size && p.id[j] == id) {
+                into.x[i] = p.x[j] + getZigzag(in);
+                into.y[i] = p.y[j] + getZigzag(in);
+            } else {
+                into.x[i] = getZigzag(in);
+                into.y[i] = getZigzag(in);
+            }
+        }
+        if (in.position() != end) {
+            throw new IOException("Corrupt trajectory frame at tick " + into.tick);
+        }
+        previous.copyFrom(into);
+        return true;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    // Makes at least n bytes readable unless the file ends first.
+    private boolean fill(int n) throws IOException {
+        if (in.remaining() >= n) {
+            return true;
+        }
+        if (n > in.capacity()) {
+            ByteBuffer bigger = ByteBuffer.allocateDirect(Integer.highestOneBit(n) * 2);
+            bigger.put(in);
+            in = bigger;
+        } else {
+            in.compact();
+        }
+        while (in.position() < n) {
+            if (channel.read(in) < 0) {
+                break;
+            }
+        }
+        in.flip();
+        return in.remaining() >= n;
+    }
+
+    private static long getVarint(ByteBuffer buf) {
+        long value = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = buf.get();
+            value |= (long) (b & 0x7F) << shift;
+            shift += 7;
+        } while (b < 0);
+        return value;
+    }
+
+    private static int getZigzag(ByteBuffer buf) {
+        int value = (int) getVarint(buf);
+        return value >>> 1 ^ -(value & 1);
+    }
+}
@@ -0,0 +1,201 @@
+package jraffic;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ArrayBlockingQueue;
+
+// Writes every recorded tick of a Simulation to a compact binary log.
+//
+// The simulation thread only copies the tick into a pooled Snapshot and hands it
+// over; a background thread encodes and writes it through a FileChannel. It waits
+// only when the writer has fallen a whole pool behind.
+//
+// File: MAGIC, VERSION, then one frame per tick as a varint body length and body:
+//   varint  tick - previous tick
+//   byte    lights | phase << 4 | 64 if a phase is pending
+//   byte    pendingPhase, only when pending
+//   varint  vehicle count, then per vehicle in list order:
+//     varint  id - previous id in this frame (the first is relative to -1)
+//     byte    Snapshot.state
+//     zigzag  x, y relative to the same id in the previous frame, absolute if new
+// Ids increase along the vehicle list, so both frames are matched in one pass.
+public class TrajectoryRecorder implements Closeable {
+
+    public static final int MAGIC = 0x4A525452; // "JRTR"
+    public static final int VERSION = 1;
+
+    private static final int POOL = 64;
+    private static final int OUT_SIZE = 1 << 20;
+
+    private final FileChannel channel;
+    private final ArrayBlockingQueue<Snapshot> free = new ArrayBlockingQueue<>(POOL);
+    private final ArrayBlockingQueue<Snapshot> full = new ArrayBlockingQueue<>(POOL + 1);
+    private final Snapshot end = new Snapshot();
+    private final Thread writer;
+
+    // Writer thread state.
+    private final ByteBuffer out = ByteBuffer.allocateDirect(OUT_SIZE);
+    private ByteBuffer frame = ByteBuffer.allocate(1024);
+    private Snapshot previous = new Snapshot();
+    private volatile IOException failure;
+    private volatile long bytes;
+    private volatile long frames;
+
+    public TrajectoryRecorder(Path path) throws IOException {
+        this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+        for (int i = 0; i < POOL; i++) {
+            free.add(new Snapshot());
+        }
+        out.putInt(MAGIC).put((byte) VERSION);
+        this.writer = new Thread(this::drain, "trajectory-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    public void record(Simulation sim) {
+        try {
+            Snapshot s = free.take();
+            s.capture(sim);
+            full.put(s);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while recording", e);
+        }
+    }
+
+    public long frames() {
+        return frames;
+    }
+
+    // Bytes written to the file so far, header included.
+    public long bytes() {
+        return bytes;
+    }
+
+    // Waits for every recorded tick to reach the file.
+    @Override
+    public void close() throws IOException {
+        try {
+            full.put(end);
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while closing the recording", e);
+        } finally {
+            channel.close();
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    private void drain() {
+        try {
+            while (true) {
+                Snapshot s = full.take();
+                if (s == end) {
+                    break;
+                }
+                if (failure == null) {
+                    try {
+                        write(s);
+                    } catch (IOException e) {
+                        failure = e;
+                    }
+                }
+                // Keep recycling after a failure so the simulation never blocks on it.
+                Snapshot last = previous;
+                previous = s;
+                free.put(last);
+            }
+            if (failure == null) {
+                flush();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException e) {
+            failure = e;
+        }
+    }
+
+    private void write(Snapshot s) throws IOException {
+        encode(s);
+        int length = frame.remaining();
+        if (out.remaining() < length + 5) {
+            flush();
+        }
+        if (out.remaining() < length + 5) {
+            // Larger than the whole buffer: write it straight through.
+            putVarint(out, length);
+            flush();
+            while (frame.hasRemaining()) {
+                channel.write(frame);
+            }
+            bytes += length;
+        } else {
+            putVarint(out, length);
+            out.put(frame);
+        }
+        frames++;
+    }
+
+    private void encode(Snapshot s) {
+        int needed = 32 + s.size * 21;
+        if (frame.capacity() < needed) {
+            frame = ByteBuffer.allocate(Math.max(needed, frame.capacity() * 2));
+        }
+        frame.clear();
+        Snapshot p = previous;
+        putVarint(frame, s.tick - p.tick);
+        frame.put((byte) (s.lights | s.phase.ordinal() << 4 | (s.pendingPhase != null ? 64 : 0)));
+        if (s.pendingPhase != null) {
+            frame.put((byte) s.pendingPhase.ordinal());
+        }
+        putVarint(frame, s.size);
+        long lastId = -1;
+        int j = 0;
+        for (int i = 0; i < s.size; i++) {
+            long id = s.id[i];
+            putVarint(frame, id - lastId);
+            lastId = id;
+            frame.put(s.state[i]);
+            while (j < p.size && p.id[j] < id) {
+                j++;
+            }
+            if (j < p.size && p.id[j] == id) {
+                putZigzag(frame, s.x[i] - p.x[j]);
+                putZigzag(frame, s.y[i] - p.y[j]);
+            } else {
+                putZigzag(frame, s.x[i]);
+                putZigzag(frame, s.y[i]);
+            }
+        }
+        frame.flip();
+    }
+
+    private void flush() throws IOException {
+        out.flip();
+        bytes += out.remaining();
+        while (out.hasRemaining()) {
+            channel.write(out);
+        }
+        out.clear();
+    }
+
+    static void putVarint(ByteBuffer buf, long value) {
+        while ((value & ~0x7FL) != 0) {
+            buf.put((byte) (value & 0x7F | 0x80));
+            value >>>= 7;
+        }
+        buf.put((byte) value);
+    }
+
+    static void putZigzag(ByteBuffer buf, int value) {
+        putVarint(buf, (value << 1 ^ value >> 31) & 0xFFFFFFFFL);
+    }
+}
@@ -0,0 +1,164 @@
+package jraffic;
+
+import java.io.PrintWriter;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+// Every trip through an intersection or a Grid city, folded in as its vehicle
+// leaves the map: a count per origin (the approach it entered on), destination
+// (the dir it leaves in) and color, and per origin-destination pair histograms
+// of travel time and of time stood still, at a red light or in the queue behind
+// one. Nothing is kept per trip, so memory is fixed however many vehicles pass.
+//
+// Fed by Simulation or Grid when attached, from the simulation thread only,
+// with the same lazySet publishing as Histogram; any thread may query or
+// export at any time and sees counts at most a few trips behind.
+public class TripStats {
+
+    private static final MovementDirection[] DIRS = MovementDirection.values();
+    private static final int COLORS = Vehicle.COLOR_NAMES.length;
+
+    // Indexed by (origin * 4 + dir) * COLORS + color.
+    private final AtomicLongArray trips = new AtomicLongArray(DIRS.length * DIRS.length * COLORS);
+    // Ticks from entering to leaving the map, per origin * 4 + dir.
+    public final Histogram[] travelTime = new Histogram[DIRS.length * DIRS.length];
+    // Ticks of that spent standing still, per origin * 4 + dir.
+    public final Histogram[] stoppedTime = new Histogram[DIRS.length * DIRS.length];
+
+    public TripStats() {
+        for (int i = 0; i < travelTime.length; i++) {
+            travelTime[i] = new Histogram();
+            stoppedTime[i] = new Histogram();
+        }
+    }
+
+    public void record(Vehicle v, long travelTicks) {
+        int od = v.origin.ordinal() * DIRS.length + v.dir.ordinal();
+        int i = od * COLORS + v.colorId;
+        trips.lazySet(i, trips.get(i) + 1);
+        travelTime[od].record(travelTicks);
+        stoppedTime[od].record(v.stoppedTicks);
+    }
+
+    public long trips(MovementDirection from, MovementDirection to, int color) {
+        return trips.get((from.ordinal() * DIRS.length + to.ordinal()) * COLORS + color);
+    }
+
+    public long trips(MovementDirection from, MovementDirection to) {
+        long total = 0;
+        for (int c = 0; c < COLORS; c++) {
+            total += trips(from, to, c);
+        }
+        return total;
+    }
+
+    public long trips() {
+        long total = 0;
+        for (int i = 0; i < trips.length(); i++) {
+            total += trips.get(i);
+        }
+        return total;
+    }
+
+    public Histogram travelTime(MovementDirection from, MovementDirection to) {
+        return travelTime[from.ordinal() * DIRS.length + to.ordinal()];
+    }
+
+    public Histogram stoppedTime(MovementDirection from, MovementDirection to) {
+        return stoppedTime[from.ordinal() * DIRS.length + to.ordinal()];
+    }
+
+    // Every pair folded together.
+    public Histogram travelTime() {
+        Histogram total = new Histogram();
+        for (Histogram h : travelTime) {
+            h.addTo(total);
+        }
+        return total;
+    }
+
+    public Histogram stoppedTime() {
+        Histogram total = new Histogram();
+        for (Histogram h : stoppedTime) {
+            h.addTo(total);
+        }
+        return total;
+    }
+
+    // Folds these trips into another, e.g. to aggregate per-intersection stats.
+    public void addTo(TripStats target) {
+        for (int i = 0; i < trips.length(); i++) {
+            target.trips.addAndGet(i, trips.get(i));
+        }
+        for (int i = 0; i < travelTime.length; i++) {
+            travelTime[i].addTo(target.travelTime[i]);
+            stoppedTime[i].addTo(target.stoppedTime[i]);
+        }
+    }
+
+    public static void writeCsvHeader(PrintWriter out) {
+        out.println("tick,from,to,trips,blue,yellow,brown,travel.mean,travel.p50,travel.p90,travel.p99,travel.max,"
+                + "stopped.mean,stopped.p50,stopped.p90,stopped.p99,stopped.max");
+    }
+
+    // One row per origin-destination pair that saw a trip.
+    public void writeCsv(PrintWriter out, long tick) {
+        for (MovementDirection from : DIRS) {
+            for (MovementDirection to : DIRS) {
+                long n = trips(from, to);
+                if (n == 0) {
+                    continue;
+                }
+                Histogram travel = travelTime(from, to);
+                Histogram stopped = stoppedTime(from, to);
+                out.printf(Locale.ROOT, "%d,%s,%s,%d,%d,%d,%d,%.3f,%d,%d,%d,%d,%.3f,%d,%d,%d,%d%n", tick, from, to, n,
+                        trips(from, to, 0), trips(from, to, 1), trips(from, to, 2),
+                        travel.mean(), travel.valueAtQuantile(0.5), travel.valueAtQuantile(0.9),
+                        travel.valueAtQuantile(0.99), travel.max(),
+                        stopped.mean(), stopped.valueAtQuantile(0.5), stopped.valueAtQuantile(0.9),
+                        stopped.valueAtQuantile(0.99), stopped.max());
+            }
+        }
+    }
+
+    // One JSON object per line, as Metrics.writeJson.
+    public void writeJson(PrintWriter out, long tick) {
+        StringBuilder sb = new StringBuilder();
+        sb.append("{\"tick\":").append(tick).append(",\"trips\":").append(trips()).append(",\"od\":[");
+        boolean first = true;
+        for (MovementDirection from : DIRS) {
+            for (MovementDirection to : DIRS) {
+                long n = trips(from, to);
+                if (n == 0) {
+                    continue;
+                }
+                if (!first) {
+                    sb.append(',');
+                }
+                first = false;
+                sb.append("{\"from\":\"").append(from).append("\",\"to\":\"").append(to).append("\",\"trips\":")
+                        .append(n).append(",\"colors\":{");
+                for (int c = 0; c < COLORS; c++) {
+                    if (c > 0) {
+                        sb.append(',');
+                    }
+                    sb.append('"').append(Vehicle.COLOR_NAMES[c]).append("\":").append(trips(from, to, c));
+                }
+                sb.append("},");
+                json(sb, "travel", travelTime(from, to)).append(',');
+                json(sb, "stopped", stoppedTime(from, to)).append('}');
+            }
+        }
+        sb.append("]}");
+        out.println(sb);
+    }
+
+    private static StringBuilder json(StringBuilder sb, String name, Histogram h) {
+        return sb.append('"').append(name).append("\":{\"mean\":")
+                .append(String.format(Locale.ROOT, "%.3f", h.mean()))
+                .append(",\"p50\":").append(h.valueAtQuantile(0.5))
+                .append(",\"p90\":").append(h.valueAtQuantile(0.9))
+                .append(",\"p99\":").append(h.valueAtQuantile(0.99))
+                .append(",\"max\":").append(h.max()).append('}');
+    }
+}
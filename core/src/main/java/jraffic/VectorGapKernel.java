@@ -0,0 +1,39 @@
+package jraffic;
+
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+// A whole vector of vehicles per step with the incubating Vector API, the rest
+// one at a time. Only ever loaded through GapKernel.create, which falls back to
+// ScalarGapKernel when the JVM was started without
+// --add-modules jdk.incubator.vector.
+public class VectorGapKernel implements GapKernel {
+
+    private static final VectorSpecies<Integer> SPECIES = IntVector.SPECIES_PREFERRED;
+
+    private final GapKernel tail = new ScalarGapKernel();
+
+    @Override
+    public void decide(int[] progress, int[] ahead, int from, int to, int stop, boolean red, int safe,
+            boolean[] moving, boolean[] stepping) {
+        int k = from;
+        int bound = from + SPECIES.loopBound(to - from);
+        VectorMask<Integer> none = SPECIES.maskAll(false);
+        for (; k < bound; k += SPECIES.length()) {
+            IntVector p = IntVector.fromArray(SPECIES, progress, k);
+            IntVector a = IntVector.fromArray(SPECIES, ahead, k);
+            VectorMask<Integer> held = red ? p.compare(VectorOperators.EQ, stop) : none;
+            VectorMask<Integer> clear = a.compare(VectorOperators.GT, p.add(safe));
+            held.not().intoArray(moving, k);
+            clear.andNot(held).intoArray(stepping, k);
+        }
+        tail.decide(progress, ahead, k, to, stop, red, safe, moving, stepping);
+    }
+
+    @Override
+    public String name() {
+        return "vector";
+    }
+}
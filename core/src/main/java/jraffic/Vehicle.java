@@ -1,3 +1,5 @@
+package jraffic;
+
 import java.awt.Color;
 
 public class Vehicle {
@@ -6,41 +8,54 @@ public class Vehicle {
     public int y;
     public MovementDirection dir;
     public MovementDirection startDir;
-    
+    // The approach it entered the map on. Unlike startDir it stays when a Grid
+    // hands the vehicle to the next intersection.
+    public MovementDirection origin;
+
     public Color color;
     public String colorName;
+    // Index into COLOR_NAMES, for table lookups.
+    public int colorId;
     public boolean turned;
     public boolean moving;
+    public int waitTicks;
+    // Assigned by the engine on entry; increases along its vehicle list.
+    public long id;
+    // Engine tick it entered on, and ticks it has stood still since.
+    public long entryTick;
+    public int stoppedTicks;
+
+    public static final int SAFE_DISTANCE = 95;
 
     private static final Color BROWN = new Color(160, 32, 240);
+    private static final MovementDirection[] DIRS = MovementDirection.values();
 
     public Vehicle(int x, int y, MovementDirection dir, Color color, String colorName) {
         this.x = x;
         this.y = y;
         this.dir = dir;
         this.startDir = dir;
+        this.origin = dir;
         this.color = color;
         this.colorName = colorName;
+        this.colorId = colorId(colorName);
         this.turned = false;
         this.moving = false;
     }
 
     public static Vehicle spawn(int x, int y, MovementDirection dir, String colorName) {
-        Color color;
+        return new Vehicle(x, y, dir, color(colorName), colorName);
+    }
+
+    public static Color color(String colorName) {
         switch (colorName) {
-            case "Blue":
-                color = Color.BLUE;
-                break;
             case "Yellow":
-                color = Color.YELLOW;
-                break;
+                return Color.YELLOW;
             case "Brown":
-                color = BROWN;
-                break;
+                return BROWN;
             default:
-                color = Color.BLUE;
+                return Color.BLUE;
         }
-        return new Vehicle(x, y, dir, color, colorName);
     }
 
     public void step() {
@@ -61,60 +76,43 @@ public class Vehicle {
     }
 
     public void turnCheck() {
+        turnCheck(Layout.DEFAULT);
+    }
 
-        if (this.dir == MovementDirection.North) {
-            if (this.x == 360 && this.y == 310 && this.color.equals(BROWN)) {
-                this.dir = MovementDirection.West;
-                this.turned = true;
-            } else if (this.x == 360 && this.y == 360 && this.color.equals(Color.YELLOW)) {
-                this.dir = MovementDirection.East;
-                this.turned = true;
-            }
-        } else if (this.dir == MovementDirection.South) {
-            if (this.y == 310 && this.x == 410 && this.color.equals(Color.YELLOW)) {
-                this.dir = MovementDirection.West;
-                this.turned = true;
-            } else if (this.y == 360 && this.x == 410 && this.color.equals(BROWN)) {
-                this.dir = MovementDirection.East;
-                this.turned = true;
-            }
-        } else if (this.dir == MovementDirection.East) {
-            if (this.x == 360 && this.y == 360 && this.color.equals(BROWN)) {
-                this.dir = MovementDirection.North;
-                this.turned = true;
-            } else if (this.x == 410 && this.y == 360 && this.color.equals(Color.YELLOW)) {
-                this.dir = MovementDirection.South;
-                this.turned = true;
-            }
-        } else if (this.dir == MovementDirection.West) {
-            if (this.x == 360 && this.y == 310 && this.color.equals(Color.YELLOW)) {
-                this.dir = MovementDirection.North;
-                this.turned = true;
-            } else if (this.x == 410 && this.y == 310 && this.color.equals(BROWN)) {
-                this.dir = MovementDirection.South;
-                this.turned = true;
-            }
+    // One lookup in the layout's turn table for this direction and color.
+    public void turnCheck(Layout layout) {
+        int next = layout.turn(this.dir.ordinal(), this.colorId, this.x, this.y);
+        if (next >= 0) {
+            this.dir = DIRS[next];
+            this.turned = true;
         }
-
     }
 
-    public static String randColorName() {
+    public static final String[] COLOR_NAMES = { "Blue", "Yellow", "Brown" };
 
-        int rand = (int) (Math.random() * 3);
-        switch (rand) {
-            case 0:
-                return "Blue";
-            case 1:
-                return "Yellow";
-            default:
-                return "Brown";
+    public static int hash(MovementDirection dir, MovementDirection startDir, int colorId, boolean turned,
+            boolean moving) {
+        return dir.ordinal() | startDir.ordinal() << 2 | colorId << 4 | (turned ? 64 : 0) | (moving ? 128 : 0);
+    }
+
+    public static int colorId(String colorName) {
+        for (int i = 0; i < COLOR_NAMES.length; i++) {
+            if (COLOR_NAMES[i].equals(colorName)) {
+                return i;
+            }
         }
+        return 0;
+    }
 
+    public static int randColor(SeededRandom random) {
+        return random.nextInt(COLOR_NAMES.length);
     }
 
-    public boolean blocked(java.util.List<Vehicle> vehicles) {
+    public static String randColorName(SeededRandom random) {
+        return COLOR_NAMES[randColor(random)];
+    }
 
-        final int SAFE_DISTANCE = 95;
+    public boolean blocked(java.util.List<Vehicle> vehicles) {
 
         for (Vehicle other : vehicles) {
             if (this.x == other.x && this.y == other.y && this.dir == other.dir) {
@@ -0,0 +1,756 @@
+package jraffic;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+// Structure-of-arrays alternative to Simulation. Vehicles live in primitive
+// parallel arrays indexed by slot and despawn by swap-remove, so a steady-state
+// tick allocates nothing. Slots are processed in storage order, which differs
+// from Simulation's spawn order once vehicles have been swap-removed.
+//
+// With a pool set, a tick runs in two phases instead, for a single intersection
+// too dense for one core. First every vehicle decides whether it steps against
+// the positions at the start of the tick, then every decided step is applied;
+// both phases split the lanes into chunks on the pool. A vehicle no longer sees
+// a leader that moved earlier in the same tick, so queues start up a tick later
+// per vehicle than in the sequential tick, but no outcome depends on slot order
+// or scheduling: any number of threads gives the same trajectory.
+//
+// With a kernel set as well, phase one gathers each chunk's progress into
+// primitive arrays in lane order and hands the gap and stop-line checks for
+// the whole chunk to the kernel, which may do them a vector at a time.
+public class VehicleStore implements TrafficEngine {
+
+    private static final int MAX_VEHICLES = 28;
+    private static final int MIN_SPAWN_DISTANCE = 80;
+    private static final int INITIAL_CAPACITY = 64;
+    // Vehicles per chunk of a lane in the two-phase tick.
+    private static final int CHUNK = 2048;
+
+    private static final MovementDirection[] DIRS = MovementDirection.values();
+
+    private static final int NORTH = MovementDirection.North.ordinal();
+    private static final int SOUTH = MovementDirection.South.ordinal();
+    private static final int WEST = MovementDirection.West.ordinal();
+    private static final int EAST = MovementDirection.East.ordinal();
+
+    public static final int BLUE = 0;
+    public static final int YELLOW = 1;
+    public static final int BROWN = 2;
+
+    public final TrafficSystem.TrafficHub hub = new TrafficSystem.TrafficHub();
+    public final TrafficSystem.Counters counters;
+    public final SeededRandom random;
+    public final TrafficConfig config;
+    public final Layout layout;
+
+    public int size;
+    public int[] x = new int[INITIAL_CAPACITY];
+    public int[] y = new int[INITIAL_CAPACITY];
+    public byte[] dir = new byte[INITIAL_CAPACITY];
+    public byte[] startDir = new byte[INITIAL_CAPACITY];
+    public byte[] color = new byte[INITIAL_CAPACITY];
+    public boolean[] turned = new boolean[INITIAL_CAPACITY];
+    public boolean[] moving = new boolean[INITIAL_CAPACITY];
+
+    // Slots of each lane sorted by progress, as in LaneIndex.
+    private final int[][] lanes = new int[DIRS.length][INITIAL_CAPACITY];
+    private final int[] laneSizes = new int[DIRS.length];
+
+    // Two-phase tick state: each slot's decision and turn, and per chunk its
+    // lane range, the counter changes it made and how many turns and exits it saw.
+    private boolean[] stepping = new boolean[INITIAL_CAPACITY];
+    private byte[] turnTo = new byte[INITIAL_CAPACITY];
+    private int chunks;
+    private int[] chunkLane = new int[DIRS.length];
+    private int[] chunkFrom = new int[DIRS.length];
+    private int[] chunkTo = new int[DIRS.length];
+    private int[][] chunkDeltas = new int[DIRS.length][DIRS.length + 1];
+    private int[] chunkTurns = new int[DIRS.length];
+    private int[] chunkExits = new int[DIRS.length];
+    private int[] pending = new int[INITIAL_CAPACITY];
+    // Batched phase one, per lane and in lane order: progress, progress ahead
+    // and the kernel's decisions.
+    private int[][] laneProgress = new int[DIRS.length][0];
+    private int[][] laneAhead = new int[DIRS.length][0];
+    private boolean[][] laneMoving = new boolean[DIRS.length][0];
+    private boolean[][] laneStepping = new boolean[DIRS.length][0];
+
+    // Runs the two-phase tick on this pool when set.
+    public ForkJoinPool pool;
+    // Decides phase one of the two-phase tick in batches when set.
+    public GapKernel kernel;
+    public SignalController controller;
+    public int maxVehicles = MAX_VEHICLES;
+    public long tick;
+    public long spawned;
+    public long despawned;
+
+    public VehicleStore() {
+        this(new SeededRandom(System.nanoTime()));
+    }
+
+    public VehicleStore(SeededRandom random) {
+        this(random, new TrafficConfig());
+    }
+
+    public VehicleStore(SeededRandom random, TrafficConfig config) {
+        this(random, config, Layout.DEFAULT);
+    }
+
+    public VehicleStore(SeededRandom random, TrafficConfig config, Layout layout) {
+        this.random = random;
+        this.config = config;
+        this.layout = layout;
+        this.counters = new TrafficSystem.Counters(layout);
+        this.controller = new AdaptiveController(config);
+    }
+
+    @Override
+    public void update() {
+
+        controller.update(hub, counters);
+
+        if (pool != null) {
+            twoPhase();
+            tick++;
+            return;
+        }
+
+        for (int i = 0; i < size; i++) {
+            moving[i] = !TrafficSystem.atRedLight(layout, hub, DIRS[dir[i]], x[i], y[i]);
+
+            boolean stepping = moving[i] && !blocked(i);
+            if (stepping || !turned[i]) {
+                track(i, -1);
+                if (stepping) {
+                    step(i);
+                }
+                if (!turned[i]) {
+                    turnCheck(i);
+                }
+                track(i, 1);
+            }
+        }
+
+        int i = 0;
+        while (i < size) {
+            if (!layout.onMap(x[i], y[i])) {
+                remove(i);
+                despawned++;
+            } else {
+                i++;
+            }
+        }
+
+        tick++;
+    }
+
+    private void twoPhase() {
+        chunks = 0;
+        for (int lane = 0; lane < DIRS.length; lane++) {
+            for (int from = 0; from < laneSizes[lane]; from += CHUNK) {
+                if (chunks == chunkLane.length) {
+                    growChunks();
+                }
+                chunkLane[chunks] = lane;
+                chunkFrom[chunks] = from;
+                chunkTo[chunks] = Math.min(from + CHUNK, laneSizes[lane]);
+                chunks++;
+            }
+            if (kernel != null && laneProgress[lane].length < laneSizes[lane]) {
+                int capacity = lanes[lane].length;
+                laneProgress[lane] = new int[capacity];
+                laneAhead[lane] = new int[capacity];
+                laneMoving[lane] = new boolean[capacity];
+                laneStepping[lane] = new boolean[capacity];
+            }
+        }
+        run(false);
+        run(true);
+
+        // Everything below is sequential and in lane order.
+        int[] queues = counters.queues;
+        int turns = 0;
+        int exits = 0;
+        for (int c = 0; c < chunks; c++) {
+            int[] deltas = chunkDeltas[c];
+            for (int q = 0; q < queues.length; q++) {
+                queues[q] += deltas[q];
+            }
+            counters.inIntersection += deltas[queues.length];
+            turns += chunkTurns[c];
+            exits += chunkExits[c];
+        }
+        if (turns + exits == 0 && config.safeDistance >= 2) {
+            return;
+        }
+        if (pending.length < turns + exits) {
+            pending = new int[Math.max(turns + exits, pending.length * 2)];
+        }
+        int n = 0;
+        for (int c = 0; c < chunks; c++) {
+            if (chunkTurns[c] == 0) {
+                continue;
+            }
+            int[] items = lanes[chunkLane[c]];
+            for (int k = chunkFrom[c]; k < chunkTo[c]; k++) {
+                if (turnTo[items[k]] >= 0) {
+                    pending[n++] = items[k];
+                }
+            }
+        }
+        int exitFrom = n;
+        for (int c = 0; c < chunks; c++) {
+            if (chunkExits[c] == 0) {
+                continue;
+            }
+            int[] items = lanes[chunkLane[c]];
+            for (int k = chunkFrom[c]; k < chunkTo[c]; k++) {
+                if (!layout.onMap(x[items[k]], y[items[k]])) {
+                    pending[n++] = items[k];
+                }
+            }
+        }
+        // A step keeps lane order when the following distance is at least one
+        // step; closer than that a follower can pass a stopped leader.
+        if (config.safeDistance < 2) {
+            for (int lane = 0; lane < DIRS.length; lane++) {
+                sortLane(lane);
+            }
+        }
+        for (int i = 0; i < exitFrom; i++) {
+            int slot = pending[i];
+            track(slot, -1);
+            int d = dir[slot];
+            laneRemoveAt(d, indexOf(slot, d, progress(slot)));
+            dir[slot] = turnTo[slot];
+            turned[slot] = true;
+            laneAdd(slot);
+            track(slot, 1);
+        }
+        // Highest slot first, so swap-remove never moves a slot still to go.
+        Arrays.sort(pending, exitFrom, n);
+        for (int i = n - 1; i >= exitFrom; i--) {
+            remove(pending[i]);
+            despawned++;
+        }
+    }
+
+    // Below a chunk's worth of vehicles forking costs more than it saves.
+    private void run(boolean commit) {
+        if (chunks <= 1 || size < CHUNK) {
+            for (int c = 0; c < chunks; c++) {
+                if (commit) {
+                    commit(c);
+                } else {
+                    decide(c);
+                }
+            }
+        } else {
+            pool.invoke(new ChunkRange(commit, 0, chunks));
+        }
+    }
+
+    // Phase one: reads positions only, writes only its own slots' moving and stepping.
+    private void decide(int c) {
+        if (kernel != null) {
+            decideBatch(c);
+            return;
+        }
+        int lane = chunkLane[c];
+        int[] items = lanes[lane];
+        int laneSize = laneSizes[lane];
+        int safe = config.safeDistance;
+        // Progress of the first vehicle strictly ahead of the one at k, past the chunk at first.
+        int k = chunkTo[c] - 1;
+        int ahead = Integer.MAX_VALUE;
+        int p = progress(items[k]);
+        for (int j = k + 1; j < laneSize; j++) {
+            int q = progress(items[j]);
+            if (q > p) {
+                ahead = q;
+                break;
+            }
+        }
+        for (; k >= chunkFrom[c]; k--) {
+            int slot = items[k];
+            int q = progress(slot);
+            if (q < p) {
+                ahead = p;
+                p = q;
+            }
+            moving[slot] = !TrafficSystem.atRedLight(layout, hub, DIRS[lane], x[slot], y[slot]);
+            stepping[slot] = moving[slot] && (ahead == Integer.MAX_VALUE || ahead - q > safe);
+        }
+    }
+
+    // Phase one through the kernel: the same walk as decide, collecting instead
+    // of deciding, then one kernel call and a scatter back to slots.
+    private void decideBatch(int c) {
+        int lane = chunkLane[c];
+        int[] items = lanes[lane];
+        int laneSize = laneSizes[lane];
+        int[] progress = laneProgress[lane];
+        int[] aheadOf = laneAhead[lane];
+        int from = chunkFrom[c];
+        int to = chunkTo[c];
+        int k = to - 1;
+        int ahead = Integer.MAX_VALUE;
+        int p = progress(items[k]);
+        for (int j = k + 1; j < laneSize; j++) {
+            int q = progress(items[j]);
+            if (q > p) {
+                ahead = q;
+                break;
+            }
+        }
+        for (; k >= from; k--) {
+            int q = progress(items[k]);
+            if (q < p) {
+                ahead = p;
+                p = q;
+            }
+            progress[k] = q;
+            aheadOf[k] = ahead;
+        }
+        int stop = progress(layout.stop[lane], layout.stop[lane], lane);
+        boolean red = !TrafficSystem.green(hub, DIRS[lane]);
+        boolean[] movingOf = laneMoving[lane];
+        boolean[] steppingOf = laneStepping[lane];
+        kernel.decide(progress, aheadOf, from, to, stop, red, config.safeDistance, movingOf, steppingOf);
+        for (k = from; k < to; k++) {
+            int slot = items[k];
+            moving[slot] = movingOf[k];
+            stepping[slot] = steppingOf[k];
+        }
+    }
+
+    // Phase two: applies its own slots' steps and finds their turns and exits,
+    // keeping counter changes to the chunk.
+    private void commit(int c) {
+        int lane = chunkLane[c];
+        int[] items = lanes[lane];
+        int[] deltas = chunkDeltas[c];
+        Arrays.fill(deltas, 0);
+        int turns = 0;
+        int exits = 0;
+        for (int k = chunkFrom[c]; k < chunkTo[c]; k++) {
+            int slot = items[k];
+            if (stepping[slot]) {
+                count(deltas, slot, -1);
+                if (lane == NORTH) {
+                    y[slot] += 2;
+                } else if (lane == SOUTH) {
+                    y[slot] -= 2;
+                } else if (lane == WEST) {
+                    x[slot] -= 2;
+                } else {
+                    x[slot] += 2;
+                }
+                count(deltas, slot, 1);
+            }
+            turnTo[slot] = turned[slot] ? -1 : (byte) layout.turn(lane, color[slot], x[slot], y[slot]);
+            if (turnTo[slot] >= 0) {
+                turns++;
+            }
+            if (!layout.onMap(x[slot], y[slot])) {
+                exits++;
+            }
+        }
+        chunkTurns[c] = turns;
+        chunkExits[c] = exits;
+    }
+
+    private void count(int[] deltas, int slot, int delta) {
+        int queue = layout.queueOf(DIRS[startDir[slot]], turned[slot], x[slot], y[slot]);
+        if (queue >= 0) {
+            deltas[queue] += delta;
+        }
+        if (layout.inIntersection(x[slot], y[slot])) {
+            deltas[DIRS.length] += delta;
+        }
+    }
+
+    private void sortLane(int lane) {
+        int[] items = lanes[lane];
+        for (int i = 1; i < laneSizes[lane]; i++) {
+            int slot = items[i];
+            int p = progress(slot);
+            int j = i - 1;
+            while (j >= 0 && progress(items[j]) > p) {
+                items[j + 1] = items[j];
+                j--;
+            }
+            items[j + 1] = slot;
+        }
+    }
+
+    private void growChunks() {
+        int capacity = chunkLane.length * 2;
+        chunkLane = Arrays.copyOf(chunkLane, capacity);
+        chunkFrom = Arrays.copyOf(chunkFrom, capacity);
+        chunkTo = Arrays.copyOf(chunkTo, capacity);
+        chunkTurns = Arrays.copyOf(chunkTurns, capacity);
+        chunkExits = Arrays.copyOf(chunkExits, capacity);
+        chunkDeltas = Arrays.copyOf(chunkDeltas, capacity);
+        for (int c = capacity / 2; c < capacity; c++) {
+            chunkDeltas[c] = new int[DIRS.length + 1];
+        }
+    }
+
+    private void track(int slot, int delta) {
+        counters.track(DIRS[startDir[slot]], turned[slot], x[slot], y[slot], delta);
+    }
+
+    private static int progress(int x, int y, int lane) {
+        if (lane == NORTH) {
+            return y;
+        } else if (lane == SOUTH) {
+            return -y;
+        } else if (lane == WEST) {
+            return -x;
+        }
+        return x;
+    }
+
+    private int progress(int slot) {
+        return progress(x[slot], y[slot], dir[slot]);
+    }
+
+    private boolean blocked(int slot) {
+        int lane = dir[slot];
+        int p = progress(slot);
+        int at = upperBound(lane, p);
+        return at < laneSizes[lane] && progress(lanes[lane][at]) - p <= config.safeDistance;
+    }
+
+    private void step(int slot) {
+        int lane = dir[slot];
+        int[] items = lanes[lane];
+        int laneSize = laneSizes[lane];
+        int at = indexOf(slot, lane, progress(slot));
+
+        if (lane == NORTH) {
+            y[slot] += 2;
+        } else if (lane == SOUTH) {
+            y[slot] -= 2;
+        } else if (lane == WEST) {
+            x[slot] -= 2;
+        } else {
+            x[slot] += 2;
+        }
+
+        int p = progress(slot);
+        while (at + 1 < laneSize && progress(items[at + 1]) < p) {
+            items[at] = items[at + 1];
+            items[at + 1] = slot;
+            at++;
+        }
+    }
+
+    private void turnCheck(int slot) {
+        int d = dir[slot];
+        int next = layout.turn(d, color[slot], x[slot], y[slot]);
+
+        if (next >= 0) {
+            laneRemoveAt(d, indexOf(slot, d, progress(slot)));
+            dir[slot] = (byte) next;
+            turned[slot] = true;
+            laneAdd(slot);
+        }
+    }
+
+    private void remove(int slot) {
+        track(slot, -1);
+        int lane = dir[slot];
+        laneRemoveAt(lane, indexOf(slot, lane, progress(slot)));
+
+        int last = size - 1;
+        if (slot != last) {
+            int lastLane = dir[last];
+            lanes[lastLane][indexOf(last, lastLane, progress(last))] = slot;
+            x[slot] = x[last];
+            y[slot] = y[last];
+            dir[slot] = dir[last];
+            startDir[slot] = startDir[last];
+            color[slot] = color[last];
+            turned[slot] = turned[last];
+            moving[slot] = moving[last];
+        }
+        size = last;
+    }
+
+    public boolean canSpawnVehicle(int spawnX, int spawnY, MovementDirection spawnDir) {
+
+        if (size >= maxVehicles) {
+            return false;
+        }
+
+        return spawnPointClear(spawnX, spawnY, spawnDir);
+    }
+
+    private boolean spawnPointClear(int spawnX, int spawnY, MovementDirection spawnDir) {
+
+        int lane = spawnDir.ordinal();
+        int limit = progress(spawnX, spawnY, lane) + MIN_SPAWN_DISTANCE;
+        for (int i = 0; i < laneSizes[lane] && progress(lanes[lane][i]) < limit; i++) {
+            int s = lanes[lane][i];
+            if (startDir[s] == lane
+                    && Math.abs(spawnX - x[s]) < MIN_SPAWN_DISTANCE
+                    && Math.abs(spawnY - y[s]) < MIN_SPAWN_DISTANCE) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public void clear() {
+        size = 0;
+        Arrays.fill(laneSizes, 0);
+        counters.clear();
+        hub.reset();
+        tick = 0;
+        spawned = 0;
+        despawned = 0;
+    }
+
+    public void add(int vx, int vy, MovementDirection vdir, int vcolor) {
+        add(vx, vy, vdir, vdir, vcolor, false, false);
+    }
+
+    // A vehicle already under way, as restored from a Checkpoint.
+    public void add(int vx, int vy, MovementDirection vdir, MovementDirection vstartDir, int vcolor, boolean vturned,
+            boolean vmoving) {
+        if (size == x.length) {
+            grow();
+        }
+        int slot = size++;
+        x[slot] = vx;
+        y[slot] = vy;
+        dir[slot] = (byte) vdir.ordinal();
+        startDir[slot] = (byte) vstartDir.ordinal();
+        color[slot] = (byte) vcolor;
+        turned[slot] = vturned;
+        moving[slot] = vmoving;
+        laneAdd(slot);
+        track(slot, 1);
+        spawned++;
+    }
+
+    public void addVehicleAt(int vx, int vy, MovementDirection vdir) {
+        if (canSpawnVehicle(vx, vy, vdir)) {
+            add(vx, vy, vdir, Vehicle.randColor(random));
+        }
+    }
+
+    public void addVehicleAt(MovementDirection vdir) {
+        addVehicleAt(layout.spawnX[vdir.ordinal()], layout.spawnY[vdir.ordinal()], vdir);
+    }
+
+    public void addSouth() {
+        addVehicleAt(MovementDirection.South);
+    }
+
+    public void addNorth() {
+        addVehicleAt(MovementDirection.North);
+    }
+
+    public void addWest() {
+        addVehicleAt(MovementDirection.East);
+    }
+
+    public void addEast() {
+        addVehicleAt(MovementDirection.West);
+    }
+
+    @Override
+    public int entryCount() {
+        return DIRS.length;
+    }
+
+    @Override
+    public MovementDirection entryDirection(int entry) {
+        return DIRS[entry];
+    }
+
+    @Override
+    public boolean spawn(int entry, int vcolor) {
+        MovementDirection vdir = DIRS[entry];
+        int vx = layout.spawnX[entry];
+        int vy = layout.spawnY[entry];
+        if (!spawnPointClear(vx, vy, vdir)) {
+            return false;
+        }
+        add(vx, vy, vdir, vcolor);
+        return true;
+    }
+
+    @Override
+    public void addRandom() {
+
+        int rand = random.nextInt(4);
+
+        switch (rand) {
+            case 0:
+                addSouth();
+                break;
+            case 1:
+                addNorth();
+                break;
+            case 2:
+                addWest();
+                break;
+            case 3:
+                addEast();
+                break;
+        }
+
+    }
+
+    @Override
+    public int vehicleCount() {
+        return size;
+    }
+
+    @Override
+    public long spawned() {
+        return spawned;
+    }
+
+    @Override
+    public long despawned() {
+        return despawned;
+    }
+
+    @Override
+    public long tick() {
+        return tick;
+    }
+
+    @Override
+    public TrafficSystem.TrafficHub hub() {
+        return hub;
+    }
+
+    @Override
+    public TrafficSystem.Counters counters() {
+        return counters;
+    }
+
+    @Override
+    public long stateHash() {
+        long h = hub.hash();
+        for (int i = 0; i < size; i++) {
+            h = TrafficEngine.hash(h, x[i]);
+            h = TrafficEngine.hash(h, y[i]);
+            h = TrafficEngine.hash(h, Vehicle.hash(DIRS[dir[i]], DIRS[startDir[i]], color[i], turned[i], moving[i]));
+        }
+        return h;
+    }
+
+    private void grow() {
+        int capacity = x.length * 2;
+        x = Arrays.copyOf(x, capacity);
+        y = Arrays.copyOf(y, capacity);
+        dir = Arrays.copyOf(dir, capacity);
+        startDir = Arrays.copyOf(startDir, capacity);
+        color = Arrays.copyOf(color, capacity);
+        turned = Arrays.copyOf(turned, capacity);
+        moving = Arrays.copyOf(moving, capacity);
+        stepping = Arrays.copyOf(stepping, capacity);
+        turnTo = Arrays.copyOf(turnTo, capacity);
+    }
+
+    private void laneAdd(int slot) {
+        int lane = dir[slot];
+        int[] items = lanes[lane];
+        int laneSize = laneSizes[lane];
+        if (laneSize == items.length) {
+            items = Arrays.copyOf(items, laneSize * 2);
+            lanes[lane] = items;
+        }
+        int at = upperBound(lane, progress(slot));
+        System.arraycopy(items, at, items, at + 1, laneSize - at);
+        items[at] = slot;
+        laneSizes[lane] = laneSize + 1;
+    }
+
+    private void laneRemoveAt(int lane, int at) {
+        int[] items = lanes[lane];
+        int laneSize = laneSizes[lane] - 1;
+        System.arraycopy(items, at + 1, items, at, laneSize - at);
+        laneSizes[lane] = laneSize;
+    }
+
+    private int indexOf(int slot, int lane, int p) {
+        int[] items = lanes[lane];
+        int laneSize = laneSizes[lane];
+        for (int i = lowerBound(lane, p); i < laneSize; i++) {
+            if (items[i] == slot) {
+                return i;
+            }
+        }
+        throw new IllegalStateException("Slot " + slot + " is not indexed in lane " + DIRS[lane]);
+    }
+
+    private int lowerBound(int lane, int p) {
+        int[] items = lanes[lane];
+        int lo = 0;
+        int hi = laneSizes[lane];
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (progress(items[mid]) < p) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    private int upperBound(int lane, int p) {
+        int[] items = lanes[lane];
+        int lo = 0;
+        int hi = laneSizes[lane];
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (progress(items[mid]) <= p) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    private class ChunkRange extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final boolean commit;
+        private final int from;
+        private final int to;
+
+        ChunkRange(boolean commit, int from, int to) {
+            this.commit = commit;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from == 1) {
+                if (commit) {
+                    commit(from);
+                } else {
+                    decide(from);
+                }
+                return;
+            }
+            int mid = (from + to) >>> 1;
+            invokeAll(new ChunkRange(commit, from, mid), new ChunkRange(commit, mid, to));
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package jraffic;
+
+// The part of the world shown on screen: world point (left, top) is drawn at the
+// top-left pixel and one world unit covers scale pixels.
+public class Viewport {
+
+    public static final double MIN_SCALE = 0.01;
+    public static final double MAX_SCALE = 4;
+
+    public double left;
+    public double top;
+    public double scale = 1;
+    public int width;
+    public int height;
+
+    public Viewport(int width, int height) {
+        this.width = width;
+        this.height = height;
+    }
+
+    public double right() {
+        return left + width / scale;
+    }
+
+    public double bottom() {
+        return top + height / scale;
+    }
+
+    public int screenX(double worldX) {
+        return (int) Math.floor((worldX - left) * scale);
+    }
+
+    public int screenY(double worldY) {
+        return (int) Math.floor((worldY - top) * scale);
+    }
+
+    public void pan(double screenDx, double screenDy) {
+        left -= screenDx / scale;
+        top -= screenDy / scale;
+    }
+
+    // Zooms by factor while keeping the world point under the given pixel in place.
+    public void zoomAt(int screenX, int screenY, double factor) {
+        double worldX = left + screenX / scale;
+        double worldY = top + screenY / scale;
+        scale = Math.max(MIN_SCALE, Math.min(MAX_SCALE, scale * factor));
+        left = worldX - screenX / scale;
+        top = worldY - screenY / scale;
+    }
+
+    // Shows the whole world, centered.
+    public void fit(int worldWidth, int worldHeight) {
+        scale = Math.max(MIN_SCALE, Math.min(1, Math.min((double) width / worldWidth, (double) height / worldHeight)));
+        left = (worldWidth - width / scale) / 2;
+        top = (worldHeight - height / scale) / 2;
+    }
+}
@@ -0,0 +1,50 @@
+package jraffic;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+// The per-entry rings keep arrival order across growth and wrap-around, stop at
+// the limit, and report the peak of the total rather than of one entry.
+class BacklogTest {
+
+    @Test
+    void keepsOrderUpToTheLimit() {
+        Backlog backlog = new Backlog(2, 100);
+        int next = 0;
+        int taken = 0;
+        for (int round = 0; round < 45; round++) {
+            for (int i = 0; i < 7; i++) {
+                assertTrue(backlog.add(0, next++ % 3));
+            }
+            for (int i = 0; i < 5; i++) {
+                assertEquals(taken++ % 3, backlog.peek(0));
+                backlog.remove(0);
+            }
+        }
+        while (backlog.size(0) < 100) {
+            assertTrue(backlog.add(0, next++ % 3));
+        }
+        assertTrue(backlog.isFull(0));
+        assertFalse(backlog.add(0, 1));
+        for (int i = 0; i < 100; i++) {
+            assertEquals((taken + i) % 3, backlog.get(0, i));
+        }
+        assertTrue(backlog.isEmpty(1));
+    }
+
+    @Test
+    void peakIsOfTheTotal() {
+        Backlog backlog = new Backlog(4, 1 << 16);
+        for (int e = 0; e < 4; e++) {
+            for (int i = 0; i < 10; i++) {
+                backlog.add(e, 0);
+            }
+        }
+        backlog.clear(0);
+        assertEquals(30, backlog.total());
+        assertEquals(40, backlog.peak());
+    }
+}
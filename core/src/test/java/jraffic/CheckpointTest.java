@@ -0,0 +1,98 @@
+package jraffic;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.function.Function;
+
+import org.junit.jupiter.api.Test;
+
+// Checkpointing after N ticks and continuing M more in a fresh engine must land
+// on the state of running N + M straight, demand backlogs included.
+class CheckpointTest {
+
+    private static final long N = 20_000;
+    private static final long M = 20_000;
+
+    @Test
+    void objectsResumeExactly() throws IOException {
+        resumesExactly(Simulation::new);
+    }
+
+    @Test
+    void soaResumesExactly() throws IOException {
+        resumesExactly(VehicleStore::new);
+    }
+
+    @Test
+    void rejectsOtherVersions() throws IOException {
+        Simulation sim = new Simulation(new SeededRandom(1));
+        Path file = Files.createTempFile("jraffic", ".ck");
+        try {
+            Checkpoint.capture(sim, null).write(file);
+            byte[] image = Files.readAllBytes(file);
+            for (int version : new int[] { 0, 2, 3 }) {
+                image[4] = (byte) version;
+                Files.write(file, image);
+                boolean rejected = false;
+                try {
+                    Checkpoint.read(file);
+                } catch (IOException e) {
+                    rejected = true;
+                }
+                assertTrue(rejected, "version " + version);
+            }
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    private static void resumesExactly(Function<SeededRandom, TrafficEngine> factory) throws IOException {
+        TrafficEngine straight = factory.apply(new SeededRandom(7));
+        TrafficDemand straightDemand = demand(straight, 7);
+        run(straight, straightDemand, 0, N + M);
+
+        TrafficEngine first = factory.apply(new SeededRandom(7));
+        TrafficDemand firstDemand = demand(first, 7);
+        run(first, firstDemand, 0, N);
+        assertTrue(firstDemand.backlog() > 0, "the checkpoint holds a backlog");
+        Path file = Files.createTempFile("jraffic", ".ck");
+        Checkpoint checkpoint;
+        try {
+            Checkpoint.capture(first, firstDemand).write(file);
+            checkpoint = Checkpoint.read(file);
+        } finally {
+            Files.delete(file);
+        }
+
+        // Other seeds, so only the restored streams can make the runs agree.
+        TrafficEngine resumed = factory.apply(new SeededRandom(99));
+        TrafficDemand resumedDemand = demand(resumed, 99);
+        checkpoint.restore(resumed, resumedDemand);
+        assertEquals(N, checkpoint.tick());
+        assertEquals(first.stateHash(), resumed.stateHash(), "at the checkpoint");
+        run(resumed, resumedDemand, N, M);
+
+        assertEquals(straight.stateHash(), resumed.stateHash());
+        assertEquals(straight.despawned(), resumed.despawned());
+        assertEquals(straightDemand.generated, resumedDemand.generated);
+        assertEquals(straightDemand.injected, resumedDemand.injected);
+        assertEquals(straightDemand.backlog(), resumedDemand.backlog());
+    }
+
+    private static TrafficDemand demand(TrafficEngine engine, long seed) {
+        TrafficDemand demand = new TrafficDemand(engine, new SeededRandom(seed).split());
+        demand.parseRates("0.02");
+        return demand;
+    }
+
+    private static void run(TrafficEngine engine, TrafficDemand demand, long from, long ticks) {
+        for (long i = from; i < from + ticks; i++) {
+            demand.inject(i);
+            engine.update();
+        }
+    }
+}
@@ -0,0 +1,219 @@
+package jraffic;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.jupiter.api.Test;
+
+// Runs that may only differ in how they are executed must give the same
+// trajectory: the hash of every tick's state, folded over the run.
+class DeterminismTest {
+
+    private static final MovementDirection[] DIRS = MovementDirection.values();
+
+    @Test
+    void gridIsIndependentOfThreadCount() {
+        long single = gridTrajectory(1);
+        assertEquals(single, gridTrajectory(4));
+        assertEquals(single, gridTrajectory(7));
+    }
+
+    @Test
+    void sameSeedRepeats() {
+        assertEquals(simulationTrajectory(11), simulationTrajectory(11));
+        assertTrue(simulationTrajectory(11) != simulationTrajectory(12), "seeds give different runs");
+    }
+
+    @Test
+    void twoPhaseTickIsIndependentOfThreadCount() {
+        long single = denseTrajectory(1, null, 95);
+        assertEquals(single, denseTrajectory(4, null, 95));
+        assertEquals(single, denseTrajectory(7, null, 95));
+    }
+
+    // safeDistance 1 lets vehicles share a position, which the kernels have to
+    // tell apart from a leader strictly ahead.
+    @Test
+    void gapKernelsMatchTheInlineDecide() {
+        // Without -Pvector, "vector" is the scalar fallback and this checks that.
+        for (int safe : new int[] { 95, 1 }) {
+            long inline = denseTrajectory(2, null, safe);
+            assertEquals(inline, denseTrajectory(2, "scalar", safe), "scalar, safeDistance=" + safe);
+            assertEquals(inline, denseTrajectory(2, "vector", safe), "vector, safeDistance=" + safe);
+        }
+    }
+
+    // The event engine jumps over quiet stretches but must land on the tick
+    // engine's state, under every controller and off the default config.
+    @Test
+    void eventsMatchTheTickEngine() {
+        for (String controller : SignalController.NAMES) {
+            assertEventsMatch(controller, new TrafficConfig());
+        }
+        assertEventsMatch("adaptive", new TrafficConfig().parse("phaseDuration=70,vehicleLength=40,safeDistance=80"));
+    }
+
+    // A dense feed outrunning a sparser one must not hold back the sparser
+    // one's arrivals, whichever reader the scheduler favours.
+    @Test
+    void detectorFeedsMergeRepeatably() throws IOException {
+        Path dense = feed(2, 0);
+        Path sparse = feed(1, 2);
+        try {
+            long first = replayTrajectory(dense, sparse);
+            assertEquals(first, replayTrajectory(dense, sparse));
+            assertEquals(first, replayTrajectory(sparse, dense));
+        } finally {
+            Files.delete(dense);
+            Files.delete(sparse);
+        }
+    }
+
+    private static long gridTrajectory(int threads) {
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        try {
+            Grid city = new Grid(3, 3, pool, new SeededRandom(5));
+            TrafficDemand demand = new TrafficDemand(city, new SeededRandom(5).split());
+            demand.parseRates("0.05");
+            long trajectory = 0;
+            for (long i = 0; i < 20_000; i++) {
+                demand.inject(i);
+                city.update();
+                trajectory = TrafficEngine.hash(trajectory, city.stateHash());
+            }
+            assertTrue(city.handoffs > 0, "vehicles crossed between intersections");
+            return trajectory;
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    private static long simulationTrajectory(long seed) {
+        Simulation sim = new Simulation(new SeededRandom(seed));
+        long trajectory = 0;
+        for (int i = 0; i < 20_000; i++) {
+            if (i % 30 == 0) {
+                sim.addRandom();
+            }
+            sim.update();
+            trajectory = TrafficEngine.hash(trajectory, sim.stateHash());
+        }
+        return trajectory;
+    }
+
+    // Compares the two engines every 5000 ticks; arrivals are only injected at
+    // the ticks demand names, as Headless drives the event engine.
+    private static void assertEventsMatch(String controller, TrafficConfig config) {
+        Simulation sim = new Simulation(new SeededRandom(9), config);
+        sim.controller = SignalController.create(controller, config);
+        TrafficDemand simDemand = new TrafficDemand(sim, new SeededRandom(9).split());
+        simDemand.parseRates("0.006");
+        EventSimulation events = new EventSimulation(new SeededRandom(9), config);
+        events.controller = SignalController.create(controller, config);
+        TrafficDemand eventDemand = new TrafficDemand(events, new SeededRandom(9).split());
+        eventDemand.parseRates("0.006");
+
+        long i = 0;
+        for (long check = 5000; check <= 40_000; check += 5000) {
+            while (sim.tick < check) {
+                simDemand.inject(sim.tick);
+                sim.update();
+            }
+            while (i < check) {
+                eventDemand.inject(i);
+                long next = Math.min(check, eventDemand.nextInjection(i + 1));
+                events.advanceTo(next);
+                i = next;
+            }
+            assertEquals(sim.stateHash(), events.stateHash(), controller + " at tick " + check);
+        }
+        assertTrue(events.jumps > 0, "the event engine jumped");
+    }
+
+    // perTick arrivals a tick for 30000 ticks, alternating entries from entry on.
+    private static Path feed(int perTick, int entry) throws IOException {
+        StringBuilder csv = new StringBuilder("tick,approach\n");
+        for (int t = 0; t < 30_000; t++) {
+            for (int k = 0; k < perTick; k++) {
+                csv.append(t).append(',').append(entry + (t + k) % 2).append('\n');
+            }
+        }
+        Path path = Files.createTempFile("feed", ".csv");
+        Files.writeString(path, csv);
+        return path;
+    }
+
+    // Queues far smaller than either log, so the readers refill them throughout.
+    // Priming every 1000 ticks stands in for readers that keep up with the
+    // simulation, so only one reader starving the other can make arrivals late.
+    private static long replayTrajectory(Path... logs) {
+        Simulation sim = new Simulation(new SeededRandom(3));
+        DetectorReplay replay = new DetectorReplay(sim, new SeededRandom(3).split(), 4096);
+        try {
+            for (Path log : logs) {
+                replay.add(log);
+            }
+            long trajectory = 0;
+            for (long i = 0; i < 30_000; i++) {
+                if (i % 1000 == 0) {
+                    replay.prime(i);
+                }
+                replay.inject(i);
+                sim.update();
+                trajectory = TrafficEngine.hash(trajectory, sim.stateHash());
+            }
+            assertEquals(0, replay.late);
+            assertEquals(90_000, replay.received);
+            return trajectory;
+        } finally {
+            replay.close();
+        }
+    }
+
+    // Enough vehicles for several chunks per lane, so the pool does the work.
+    private static long denseTrajectory(int threads, String kernel, int safeDistance) {
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        try {
+            TrafficConfig config = new TrafficConfig();
+            config.parse("safeDistance=" + safeDistance);
+            VehicleStore store = new VehicleStore(new SeededRandom(1), config);
+            store.maxVehicles = Integer.MAX_VALUE;
+            store.pool = pool;
+            if (kernel != null) {
+                store.kernel = GapKernel.create(kernel);
+            }
+            Random random = new Random(42);
+            for (int i = 0; i < 20_000; i++) {
+                MovementDirection dir = DIRS[random.nextInt(DIRS.length)];
+                int color = random.nextInt(Vehicle.COLOR_NAMES.length);
+                switch (dir) {
+                    case North:
+                        store.add(360, -30 + 2 * random.nextInt(385), dir, color);
+                        break;
+                    case South:
+                        store.add(410, 700 - 2 * random.nextInt(365), dir, color);
+                        break;
+                    case West:
+                        store.add(800 - 2 * random.nextInt(415), 310, dir, color);
+                        break;
+                    default:
+                        store.add(-30 + 2 * random.nextInt(435), 360, dir, color);
+                }
+            }
+            long trajectory = 0;
+            for (int i = 0; i < 300; i++) {
+                store.update();
+                trajectory = TrafficEngine.hash(trajectory, store.stateHash());
+            }
+            return trajectory;
+        } finally {
+            pool.shutdown();
+        }
+    }
+}
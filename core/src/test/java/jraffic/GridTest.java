@@ -0,0 +1,58 @@
+package jraffic;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.jupiter.api.Test;
+
+// A trip through a Grid is recorded once, when its vehicle leaves the city,
+// however many intersections it crossed on the way.
+class GridTest {
+
+    private static final int BLUE = 0;
+
+    @Test
+    void everyDespawnIsOneTrip() {
+        ForkJoinPool pool = new ForkJoinPool(2);
+        try {
+            Grid city = new Grid(3, 3, pool, new SeededRandom(6));
+            city.trips = new TripStats();
+            TrafficDemand demand = new TrafficDemand(city, new SeededRandom(6).split());
+            demand.parseRates("0.02");
+            for (long i = 0; i < 30_000; i++) {
+                demand.inject(i);
+                city.update();
+            }
+            assertTrue(city.handoffs > 0, "vehicles crossed between intersections");
+            assertEquals(city.despawned, city.trips.trips());
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    // A blue vehicle goes straight, so one entering a 1x2 city eastbound on the
+    // west edge crosses both intersections.
+    @Test
+    void crossingTwoCellsIsOneTrip() {
+        ForkJoinPool pool = new ForkJoinPool(1);
+        try {
+            Grid city = new Grid(1, 2, pool, new SeededRandom(2));
+            city.trips = new TripStats();
+            int west = 2 * city.cols;
+            assertEquals(MovementDirection.East, city.entryDirection(west));
+            assertTrue(city.spawn(west, BLUE));
+            for (int i = 0; i < 20_000 && city.despawned == 0; i++) {
+                city.update();
+            }
+            assertEquals(1L, city.despawned);
+            assertEquals(1L, city.handoffs);
+            assertEquals(1L, city.trips.trips());
+            assertEquals(1L, city.trips.trips(MovementDirection.East, MovementDirection.East, BLUE));
+            assertEquals(1L, city.trips.travelTime(MovementDirection.East, MovementDirection.East).count());
+        } finally {
+            pool.shutdown();
+        }
+    }
+}
@@ -0,0 +1,119 @@
+package jraffic;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+// A recording reads back as the snapshots the simulation was in, including a
+// frame too large for the writer's buffer, and a cut-off file ends in an
+// EOFException rather than a short frame.
+class TrajectoryTest {
+
+    private static final int TICKS = 3000;
+    // At about 8 bytes a vehicle, well past the writer's 1 MiB buffer.
+    private static final int CROWD = 160_000;
+
+    @Test
+    void readsBackWhatWasRecorded() throws IOException {
+        Path file = Files.createTempFile("jraffic", ".trj");
+        try {
+            List<Snapshot> expected = record(file);
+            try (TrajectoryReader reader = new TrajectoryReader(file)) {
+                Snapshot frame = new Snapshot();
+                for (int i = 0; i < expected.size(); i++) {
+                    assertTrue(reader.next(frame), "frame " + i);
+                    assertFrame(expected.get(i), frame, i);
+                }
+                assertFalse(reader.next(frame));
+            }
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    void truncatedFileEndsInEof() throws IOException {
+        Path file = Files.createTempFile("jraffic", ".trj");
+        try {
+            List<Snapshot> expected = record(file);
+            byte[] bytes = Files.readAllBytes(file);
+            Files.write(file, Arrays.copyOf(bytes, bytes.length - 3));
+            boolean eof = false;
+            try (TrajectoryReader reader = new TrajectoryReader(file)) {
+                Snapshot frame = new Snapshot();
+                for (int i = 0; i < expected.size() - 1; i++) {
+                    assertTrue(reader.next(frame), "frame " + i);
+                    assertFrame(expected.get(i), frame, i);
+                }
+                reader.next(frame);
+            } catch (EOFException e) {
+                eof = true;
+            }
+            assertTrue(eof, "the last frame is cut off");
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    // Records a seeded run with demand, one crowded frame halfway through, and
+    // returns a live capture of every recorded tick.
+    private static List<Snapshot> record(Path file) throws IOException {
+        Simulation sim = new Simulation(new SeededRandom(4));
+        TrafficDemand demand = new TrafficDemand(sim, new SeededRandom(4).split());
+        demand.parseRates("0.02");
+        List<Snapshot> expected = new ArrayList<>();
+        try (TrajectoryRecorder recorder = new TrajectoryRecorder(file)) {
+            for (long i = 0; i < TICKS; i++) {
+                demand.inject(i);
+                sim.update();
+                recorder.record(sim);
+                expected.add(capture(sim));
+                if (i == TICKS / 2) {
+                    // Parked off the map and taken away again before the next tick.
+                    int live = sim.vehicleList.size();
+                    for (int k = 0; k < CROWD; k++) {
+                        Vehicle v = Vehicle.spawn(100_000 + k % 1000 * 500, 100_000 + k / 1000 * 500,
+                                MovementDirection.values()[k & 3], Vehicle.COLOR_NAMES[k % 3]);
+                        v.id = sim.spawned + k;
+                        sim.vehicleList.add(v);
+                    }
+                    recorder.record(sim);
+                    expected.add(capture(sim));
+                    sim.vehicleList.subList(live, sim.vehicleList.size()).clear();
+                }
+            }
+        }
+        return expected;
+    }
+
+    private static Snapshot capture(Simulation sim) {
+        Snapshot s = new Snapshot();
+        s.capture(sim);
+        return s;
+    }
+
+    private static void assertFrame(Snapshot expected, Snapshot actual, int frame) {
+        String at = "frame " + frame;
+        assertEquals(expected.tick, actual.tick, at);
+        assertEquals((long) expected.lights, (long) actual.lights, at);
+        assertEquals(expected.phase, actual.phase, at);
+        assertEquals(expected.pendingPhase, actual.pendingPhase, at);
+        assertEquals((long) expected.size, (long) actual.size, at);
+        for (int i = 0; i < expected.size; i++) {
+            assertEquals(expected.id[i], actual.id[i], at);
+            assertEquals((long) expected.x[i], (long) actual.x[i], at);
+            assertEquals((long) expected.y[i], (long) actual.y[i], at);
+            assertEquals((long) expected.state[i], (long) actual.state[i], at);
+        }
+    }
+}
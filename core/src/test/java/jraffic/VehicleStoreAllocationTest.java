@@ -0,0 +1,50 @@
+package jraffic;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+import java.lang.management.ManagementFactory;
+
+import org.junit.jupiter.api.Test;
+
+// The VehicleStore tick allocates nothing once its arrays have grown to the
+// traffic it carries. Every entry spawns whenever its spawn point is clear, so
+// the store stays saturated and vehicles keep leaving by swap-remove.
+class VehicleStoreAllocationTest {
+
+    private static final int WARMUP_TICKS = 200_000;
+    private static final int MEASURED_TICKS = 100_000;
+
+    @Test
+    void saturatedTickAllocatesNothing() {
+        assumeTrue(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean);
+        com.sun.management.ThreadMXBean threads =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        assumeTrue(threads.isThreadAllocatedMemorySupported());
+        threads.setThreadAllocatedMemoryEnabled(true);
+        long thread = Thread.currentThread().getId();
+
+        VehicleStore store = new VehicleStore(new SeededRandom(1));
+        store.maxVehicles = Integer.MAX_VALUE;
+        run(store, WARMUP_TICKS);
+        long despawnedBefore = store.despawned;
+
+        long before = threads.getThreadAllocatedBytes(thread);
+        run(store, MEASURED_TICKS);
+        long allocated = threads.getThreadAllocatedBytes(thread) - before;
+
+        assertTrue(store.despawned - despawnedBefore > 1000, "vehicles kept leaving");
+        assertTrue(store.size > 0, "the store stayed populated");
+        assertEquals(0, allocated, "bytes allocated over " + MEASURED_TICKS + " saturated ticks");
+    }
+
+    private static void run(VehicleStore store, int ticks) {
+        for (int i = 0; i < ticks; i++) {
+            for (int e = 0; e < store.entryCount(); e++) {
+                store.spawn(e, i % 3);
+            }
+            store.update();
+        }
+    }
+}
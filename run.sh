@@ -1,11 +1,16 @@
 #!/bin/bash
 echo "Building Traffic Simulator..."
-cd src
-javac -d ../build *.java
+mvn -q -B -pl core package -DskipTests
 if [ $? -eq 0 ]; then
-    echo "Build successful! Running simulator..."
-    java -cp ../build Main
+    cd core
+    if [ "$1" == "--headless" ]; then
+        echo "Build successful! Running headless simulation..."
+        java -Djava.awt.headless=true -cp target/classes jraffic.Headless "${@:2}"
+    else
+        echo "Build successful! Running simulator..."
+        java -cp target/classes jraffic.Main "$@"
+    fi
 else
     echo "Build failed. Please check for errors."
     exit 1
-fi
\ No newline at end of file
+fi